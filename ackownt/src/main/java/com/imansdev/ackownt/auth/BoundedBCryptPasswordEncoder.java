@@ -0,0 +1,143 @@
+package com.imansdev.ackownt.auth;
+
+import com.imansdev.ackownt.exception.OverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * BCrypt encoder that hashes on its own pool of {@code passwordHashing.threads} threads (one per
+ * core by default) with at most {@code passwordHashing.queueCapacity} hashes waiting. Beyond that
+ * a hash is refused at once with an {@link OverloadedException}, so a burst of logins or
+ * registrations can only tie up a bounded number of request threads and cores, and the rest of
+ * the API keeps its capacity. The caller still waits for its own hash.
+ *
+ * <p>The strength is usually picked at startup by {@link #calibrate}. Hashes stored with any other
+ * strength report {@link #upgradeEncoding} so they can be rehashed after a successful login. The
+ * time each hash takes is recorded per strength as the {@code password.hashing.duration} timer.
+ */
+public class BoundedBCryptPasswordEncoder extends BCryptPasswordEncoder implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoundedBCryptPasswordEncoder.class);
+    private static final Pattern STRENGTH = Pattern.compile("^\\$2[aby]?\\$(\\d\\d)\\$");
+    private static final int MAX_STRENGTH = 31;
+
+    private final int strength;
+    private final ThreadPoolExecutor executor;
+    private final Counter rejections;
+    private final MeterRegistry meterRegistry;
+
+    public BoundedBCryptPasswordEncoder(int strength, int threads, int queueCapacity,
+            MeterRegistry meterRegistry) {
+        super(strength);
+        this.strength = strength;
+        this.meterRegistry = meterRegistry;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger created = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable,
+                            "password-hasher-" + created.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.rejections = Counter.builder("password.hashing.rejected")
+                .description("Password hashes refused because the hashing queue was full")
+                .register(meterRegistry);
+    }
+
+    // The highest strength from minStrength up whose hash still takes no longer than
+    // targetMillis on this machine; never below minStrength
+    public static int calibrate(long targetMillis, int minStrength) {
+        // Warms up the hashing code so the first measurement is not inflated
+        hashMillis(minStrength);
+        int strength = minStrength;
+        while (strength < MAX_STRENGTH && hashMillis(strength + 1) <= targetMillis) {
+            strength++;
+        }
+        logger.info("Using BCrypt strength {} for a target of {} ms per hash", strength,
+                targetMillis);
+        return strength;
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(strength, () -> super.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(strengthOf(encodedPassword), () -> super.matches(rawPassword, encodedPassword));
+    }
+
+    // True for a BCrypt hash of any strength other than the current one, weaker or stronger
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        int stored = strengthOf(encodedPassword);
+        return stored > 0 && stored != strength;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private <T> T run(int hashStrength, Callable<T> hash) {
+        Timer timer = Timer.builder("password.hashing.duration")
+                .description("Time taken by one password hash, excluding time queued")
+                .tag("strength", String.valueOf(hashStrength)).register(meterRegistry);
+        Future<T> result;
+        try {
+            result = executor.submit(() -> timer.recordCallable(hash));
+        } catch (RejectedExecutionException e) {
+            rejections.increment();
+            throw new OverloadedException("Too many logins at the moment, please retry shortly");
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a password hash", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static long hashMillis(int strength) {
+        long start = System.nanoTime();
+        BCrypt.hashpw("calibration", BCrypt.gensalt(strength));
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    // The strength a BCrypt hash was made with, or -1 when it is not a BCrypt hash
+    private static int strengthOf(String encodedPassword) {
+        if (encodedPassword == null) {
+            return -1;
+        }
+        Matcher matcher = STRENGTH.matcher(encodedPassword);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+}
@@ -24,27 +24,36 @@ public class JwtAuthorizationFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsService userDetailsService;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private TokenDenylist tokenDenylist;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
             FilterChain chain) throws ServletException, IOException {
 
         final String authorizationHeader = request.getHeader("Authorization");
 
-        String email = null;
         String jwt = null;
+        JwtUtil.VerifiedToken token = null;
 
-        // Extract JWT and email from the Authorization header
+        // Verify the JWT from the Authorization header once
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
             jwt = authorizationHeader.substring(7); // Remove "Bearer " prefix
-            email = jwtUtil.getEmailFromToken(jwt);
+            token = jwtUtil.verify(jwt);
         }
 
-        // If the email is valid and there is no authentication in the current context
-        if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(email);
+        // If the email is valid, the token not revoked and there is no authentication in the
+        // current context
+        if (token != null && token.getEmail() != null && !tokenDenylist.isRevoked(jwt, token)
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            UserDetails userDetails =
+                    principalCache.get(token.getEmail(), userDetailsService::loadUserByUsername);
 
             // Validate the token
-            if (jwtUtil.validateToken(jwt, userDetails.getUsername())) {
+            if (token.isValidFor(userDetails.getUsername())) {
 
                 // Create an authentication token with the user's details and authorities
                 UsernamePasswordAuthenticationToken authenticationToken =
@@ -1,50 +1,139 @@
 package com.imansdev.ackownt.auth;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.impl.TextCodec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.Key;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import java.util.Date;
-import java.util.function.Function;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtUtil {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    // The standard iat claim has whole seconds, too coarse to tell a token from a revocation
+    // made in the same second
+    private static final String ISSUED_AT_MILLIS = "iatMs";
 
-    @Value("${jwt.expiration}")
-    private Long expiration;
+    private final Key signingKey;
+    private final Long expiration;
+    private final JwtParser parser;
+    // Tokens whose signature has already been checked, kept until they expire
+    private final Cache<String, VerifiedToken> verifiedTokens;
+
+    public JwtUtil(@Value("${jwt.secret}") String secret,
+            @Value("${jwt.expiration}") Long expiration,
+            @Value("${jwt.verifiedCacheMaxEntries}") long verifiedCacheMaxEntries) {
+        // Derived the way signWith(algorithm, String) derives it, so existing tokens stay valid
+        this.signingKey = new SecretKeySpec(TextCodec.BASE64.decode(secret),
+                SignatureAlgorithm.HS512.getJcaName());
+        this.expiration = expiration;
+        this.parser = Jwts.parser().setSigningKey(signingKey);
+        this.verifiedTokens = verifiedCacheMaxEntries <= 0 ? null
+                : Caffeine.newBuilder().maximumSize(verifiedCacheMaxEntries)
+                        .expireAfter(new Expiry<String, VerifiedToken>() {
+                            @Override
+                            public long expireAfterCreate(String token, VerifiedToken verified,
+                                    long currentTime) {
+                                return TimeUnit.MILLISECONDS.toNanos(Math.max(0,
+                                        verified.expiresAt - System.currentTimeMillis()));
+                            }
+
+                            @Override
+                            public long expireAfterUpdate(String token, VerifiedToken verified,
+                                    long currentTime, long currentDuration) {
+                                return currentDuration;
+                            }
+
+                            @Override
+                            public long expireAfterRead(String token, VerifiedToken verified,
+                                    long currentTime, long currentDuration) {
+                                return currentDuration;
+                            }
+                        }).build();
+    }
 
     // Generate token
     public String generateToken(String email) {
-        return Jwts.builder().setSubject(email).setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(SignatureAlgorithm.HS512, secret).compact();
+        long now = System.currentTimeMillis();
+        return Jwts.builder().setSubject(email).setIssuedAt(new Date(now))
+                .claim(ISSUED_AT_MILLIS, now).setExpiration(new Date(now + expiration))
+                .signWith(SignatureAlgorithm.HS512, signingKey).compact();
+    }
+
+    // Checks the signature and expiry once; throws like the parser for a bad or expired token
+    public VerifiedToken verify(String token) {
+        if (verifiedTokens == null) {
+            return parse(token);
+        }
+        VerifiedToken verified = verifiedTokens.get(token, this::parse);
+        // An entry may outlive its token by the cache's timer resolution
+        if (verified.isExpired()) {
+            verifiedTokens.invalidate(token);
+            return parse(token);
+        }
+        return verified;
     }
 
     // Extract username from token
     public String getEmailFromToken(String token) {
-        return getClaimFromToken(token, Claims::getSubject);
+        return verify(token).getEmail();
     }
 
     // Validate token
     public boolean validateToken(String token, String userDetailsEmail) {
-        final String email = getEmailFromToken(token);
-        return (email.equals(userDetailsEmail) && !isTokenExpired(token));
+        return verify(token).isValidFor(userDetailsEmail);
     }
 
-    private boolean isTokenExpired(String token) {
-        return getExpirationDateFromToken(token).before(new Date());
+    private VerifiedToken parse(String token) {
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        // Tokens without an issue time count as issued at the epoch, and older tokens without
+        // the millisecond claim at the start of their second
+        Object issuedAtMillis = claims.get(ISSUED_AT_MILLIS);
+        long issuedAt = issuedAtMillis instanceof Number number ? number.longValue()
+                : claims.getIssuedAt() == null ? 0 : claims.getIssuedAt().getTime();
+        return new VerifiedToken(claims.getSubject(), issuedAt,
+                claims.getExpiration().getTime());
     }
 
-    private Date getExpirationDateFromToken(String token) {
-        return getClaimFromToken(token, Claims::getExpiration);
-    }
+    // Claims of a token whose signature has been checked
+    public static final class VerifiedToken {
+        private final String email;
+        private final long issuedAt;
+        private final long expiresAt;
+
+        private VerifiedToken(String email, long issuedAt, long expiresAt) {
+            this.email = email;
+            this.issuedAt = issuedAt;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        // Epoch millis
+        public long getIssuedAt() {
+            return issuedAt;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public boolean isExpired() {
+            return expiresAt <= System.currentTimeMillis();
+        }
 
-    private <T> T getClaimFromToken(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = Jwts.parser().setSigningKey(secret).parseClaimsJws(token).getBody();
-        return claimsResolver.apply(claims);
+        public boolean isValidFor(String userDetailsEmail) {
+            return email.equals(userDetailsEmail) && !isExpired();
+        }
     }
 }
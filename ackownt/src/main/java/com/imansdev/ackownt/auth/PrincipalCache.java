@@ -0,0 +1,82 @@
+package com.imansdev.ackownt.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Principals of authenticated requests by email, so a request with a valid token does not have to
+ * load its customer first. Entries expire after {@code principalCache.ttlSeconds} and the cache
+ * holds at most {@code principalCache.maxEntries}; hits, misses and evictions are exposed as the
+ * {@code cache.*} metrics tagged {@code cache=principals}. Changes to a customer invalidate its
+ * entry once they commit.
+ *
+ * <p>Misses are loaded outside the cache: Caffeine's {@code get(key, loader)} runs the loader
+ * inside a {@code ConcurrentHashMap.compute}, whose bin monitor would pin a virtual thread to its
+ * carrier for the whole JDBC query. Concurrent misses on one email may therefore both load it.
+ */
+@Component
+public class PrincipalCache {
+
+    private final Cache<String, UserDetails> principals;
+    // Moved by every invalidation, so a load that overlapped one does not keep its result
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public PrincipalCache(MeterRegistry meterRegistry,
+            @Value("${principalCache.ttlSeconds}") long ttlSeconds,
+            @Value("${principalCache.maxEntries}") long maxEntries) {
+        this.principals = Caffeine.newBuilder().expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .maximumSize(maxEntries).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, "principals");
+    }
+
+    // Loads on a miss; a failed load is not cached
+    public UserDetails get(String email, Function<String, UserDetails> loader) {
+        UserDetails principal = principals.getIfPresent(email);
+        if (principal != null) {
+            return principal;
+        }
+        long seen = invalidations.get();
+        principal = withoutPassword(loader.apply(email));
+        principals.put(email, principal);
+        if (invalidations.get() != seen) {
+            principals.invalidate(email);
+        }
+        return principal;
+    }
+
+    // Invalidated after the commit, so a request racing the change cannot cache the old row again
+    public void invalidate(String email) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            invalidateNow(email);
+                        }
+                    });
+        } else {
+            invalidateNow(email);
+        }
+    }
+
+    private void invalidateNow(String email) {
+        invalidations.incrementAndGet();
+        principals.invalidate(email);
+    }
+
+    // Requests are authorized by token, so the password hash does not need to stay in memory
+    private static UserDetails withoutPassword(UserDetails userDetails) {
+        return new User(userDetails.getUsername(), "", userDetails.getAuthorities());
+    }
+}
@@ -0,0 +1,184 @@
+package com.imansdev.ackownt.auth;
+
+import com.imansdev.ackownt.model.TokenRevocation;
+import com.imansdev.ackownt.repository.TokenRevocationRepository;
+import com.imansdev.ackownt.service.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Revoked JWTs, checked on every authenticated request without touching the database. A single
+ * token is revoked by its signature: a bloom filter sized for {@code tokenDenylist.expectedTokens}
+ * answers for almost every token that was never revoked, and only its rare positives are looked
+ * up in the exact set. Revoking all of a customer's tokens stores a cutoff, and every token issued
+ * to that email up to the cutoff millisecond is refused, so logging in again right away works.
+ *
+ * <p>Revocations are stored in the {@code token_revocation} table and loaded on startup. Every
+ * {@code tokenDenylist.refreshSeconds} the table is polled for revocations made by other
+ * instances, and entries whose tokens have expired anyway are dropped from memory and the table.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class TokenDenylist {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenDenylist.class);
+    // Signatures are HMAC output, so their first characters are already random enough to hash
+    private static final int HASHED_CHARS = 16;
+    // Revocations committed this long after they were made are still picked up by the poll
+    private static final long POLL_OVERLAP_SECONDS = 30;
+
+    private final TokenRevocationRepository tokenRevocationRepository;
+    private final long expirationMs;
+    private final long refreshSeconds;
+    private final int expectedTokens;
+    // Signature -> expiry in epoch millis
+    private final ConcurrentHashMap<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    // Email -> [cutoff epoch millis, expiry epoch millis]
+    private final ConcurrentHashMap<String, long[]> revokedBefore = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "token-denylist-refresher");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private volatile BloomFilter bloom;
+    // Only moved by the refresher thread
+    private Instant polledUntil = Instant.EPOCH;
+
+    public TokenDenylist(TokenRevocationRepository tokenRevocationRepository,
+            @Value("${jwt.expiration}") long expirationMs,
+            @Value("${tokenDenylist.expectedTokens}") int expectedTokens,
+            @Value("${tokenDenylist.refreshSeconds}") long refreshSeconds) {
+        this.tokenRevocationRepository = tokenRevocationRepository;
+        this.expirationMs = expirationMs;
+        this.refreshSeconds = refreshSeconds;
+        this.expectedTokens = expectedTokens;
+        this.bloom = new BloomFilter(expectedTokens);
+    }
+
+    @PostConstruct
+    void start() {
+        refresh();
+        logger.info("Loaded {} revoked tokens and {} revoked customers", revokedTokens.size(),
+                revokedBefore.size());
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, refreshSeconds, refreshSeconds,
+                TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        refresher.shutdownNow();
+    }
+
+    public boolean isRevoked(String token, JwtUtil.VerifiedToken verified) {
+        long[] cutoff = revokedBefore.get(verified.getEmail());
+        if (cutoff != null && verified.getIssuedAt() <= cutoff[0]) {
+            return true;
+        }
+        int signature = token.lastIndexOf('.') + 1;
+        return bloom.mightContain(token, signature,
+                Math.min(token.length(), signature + HASHED_CHARS))
+                && revokedTokens.containsKey(token.substring(signature));
+    }
+
+    // Revokes one token; stored in the database before it takes effect
+    public void revoke(String token, JwtUtil.VerifiedToken verified) {
+        String signature = token.substring(token.lastIndexOf('.') + 1);
+        tokenRevocationRepository.save(new TokenRevocation(signature, verified.getEmail(),
+                Instant.now(), Instant.ofEpochMilli(verified.getExpiresAt())));
+        afterCommit(() -> addToken(signature, verified.getExpiresAt()));
+    }
+
+    // Revokes every token issued to the email so far
+    public void revokeAll(String email) {
+        Instant now = Instant.now();
+        Instant expiresAt = now.plusMillis(expirationMs);
+        tokenRevocationRepository.save(new TokenRevocation(null, email, now, expiresAt));
+        afterCommit(() -> addCutoff(email, now.toEpochMilli(), expiresAt.toEpochMilli()));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            action.run();
+                        }
+                    });
+        } else {
+            action.run();
+        }
+    }
+
+    private void addToken(String signature, long expiresAt) {
+        // Into the exact set first, so a bloom filter rebuilt meanwhile still picks it up
+        if (revokedTokens.put(signature, expiresAt) == null) {
+            add(bloom, signature);
+        }
+    }
+
+    private void addCutoff(String email, long cutoff, long expiresAt) {
+        revokedBefore.merge(email, new long[] {cutoff, expiresAt},
+                (current, added) -> added[0] >= current[0] ? added : current);
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            logger.warn("Could not refresh the token denylist", e);
+        }
+    }
+
+    private void refresh() {
+        Instant now = Instant.now();
+        for (TokenRevocation revocation : tokenRevocationRepository
+                .findByRevokedAtGreaterThanEqualAndExpiresAtAfter(polledUntil, now)) {
+            if (revocation.getTokenSignature() != null) {
+                addToken(revocation.getTokenSignature(), revocation.getExpiresAt().toEpochMilli());
+            } else {
+                addCutoff(revocation.getEmail(), revocation.getRevokedAt().toEpochMilli(),
+                        revocation.getExpiresAt().toEpochMilli());
+            }
+        }
+        polledUntil = now.minusSeconds(POLL_OVERLAP_SECONDS);
+
+        long nowMs = now.toEpochMilli();
+        revokedBefore.values().removeIf(cutoff -> cutoff[1] <= nowMs);
+        if (revokedTokens.values().removeIf(expiresAt -> expiresAt <= nowMs)) {
+            rebuildBloom();
+        }
+        tokenRevocationRepository.deleteExpired(now);
+    }
+
+    // A bloom filter cannot forget, so it is rebuilt without the expired tokens
+    private void rebuildBloom() {
+        BloomFilter rebuilt = new BloomFilter(expectedTokens);
+        for (String signature : revokedTokens.keySet()) {
+            add(rebuilt, signature);
+        }
+        bloom = rebuilt;
+        // Tokens added while the filter was being built may have gone into the old one
+        for (String signature : revokedTokens.keySet()) {
+            add(rebuilt, signature);
+        }
+    }
+
+    private static void add(BloomFilter filter, String signature) {
+        filter.add(signature, 0, Math.min(signature.length(), HASHED_CHARS));
+    }
+}
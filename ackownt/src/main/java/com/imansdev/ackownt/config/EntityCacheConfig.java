@@ -0,0 +1,71 @@
+package com.imansdev.ackownt.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.imansdev.ackownt.model.Customer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Local Hibernate second-level cache on Caffeine. Customers are cached by id and by their email
+ * natural id. Accounts are not: their balances are changed by native statements Hibernate cannot
+ * see. Each region keeps at most {@code entityCache.maxEntries} entries for
+ * {@code entityCache.ttlSeconds}, which also bounds how long a change made by another instance can
+ * go unseen. Hits, misses and evictions are the {@code cache.*} metrics tagged with the region.
+ */
+@Configuration
+public class EntityCacheConfig {
+
+    // Regions a cached entity needs; any other region Hibernate asks for fails the startup
+    static final List<String> REGIONS =
+            List.of(Customer.class.getName(), Customer.class.getName() + "##NaturalId");
+
+    @Bean(destroyMethod = "close")
+    public CacheManager entityCacheManager(MeterRegistry meterRegistry,
+            @Value("${entityCache.maxEntries}") long maxEntries,
+            @Value("${entityCache.ttlSeconds}") long ttlSeconds) {
+        CacheManager cacheManager =
+                Caching.getCachingProvider(CaffeineCachingProvider.class.getName()).getCacheManager();
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>()
+                .setMaximumSize(OptionalLong.of(maxEntries))
+                .setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(ttlSeconds)))
+                // Hibernate caches immutable entries, so they need not be copied
+                .setStoreByValue(false)
+                .setNativeStatisticsEnabled(true);
+        for (String region : REGIONS) {
+            // The provider's manager outlives the context, e.g. across tests in one JVM. Destroying
+            // a missing cache does nothing, while getCache would look the region up in the
+            // provider's file configuration, whose paths cannot contain its name
+            cacheManager.destroyCache(region);
+            Cache<Object, Object> cache = cacheManager.createCache(region, configuration);
+            // unwrap can only name the raw class
+            @SuppressWarnings("unchecked")
+            com.github.benmanes.caffeine.cache.Cache<Object, Object> caffeine =
+                    cache.unwrap(com.github.benmanes.caffeine.cache.Cache.class);
+            CaffeineCacheMetrics.monitor(meterRegistry, caffeine, region);
+        }
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer entityCacheProperties(CacheManager entityCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+}
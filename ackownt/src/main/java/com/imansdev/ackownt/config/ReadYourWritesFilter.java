@@ -0,0 +1,57 @@
+package com.imansdev.ackownt.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+// Keeps a user's reads on the primary for datasource.replica.readYourWritesMs after one of their
+// own requests changed something, so they do not read their writes back from a lagging replica.
+// Runs after the security filters, which authenticate the request. The choice is per thread, so
+// streamed responses, which are read on other threads, pass it on themselves.
+@Component
+@ConditionalOnProperty(name = "datasource.replica.enabled", havingValue = "true")
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWritesFilter(
+            @Value("${datasource.replica.readYourWritesMs}") long readYourWritesMs) {
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(readYourWritesMs)).build();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+            FilterChain chain) throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String email = authentication != null ? authentication.getName() : null;
+        boolean read = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+
+        if (!read) {
+            chain.doFilter(request, response);
+            // The mutation has committed by now
+            if (email != null && response.getStatus() < 400) {
+                recentWriters.put(email, Boolean.TRUE);
+            }
+            return;
+        }
+        ReplicaRoutingDataSource.requirePrimary(
+                email != null && recentWriters.getIfPresent(email) != null);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReplicaRoutingDataSource.requirePrimary(false);
+        }
+    }
+}
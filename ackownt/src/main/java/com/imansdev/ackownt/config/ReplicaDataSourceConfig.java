@@ -0,0 +1,33 @@
+package com.imansdev.ackownt.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+// With datasource.replica.enabled, read-only transactions read from datasource.replica.url while
+// everything else keeps using spring.datasource
+@Configuration
+@ConditionalOnProperty(name = "datasource.replica.enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties,
+            @Value("${datasource.replica.url}") String replicaUrl,
+            @Value("${datasource.replica.username}") String replicaUsername,
+            @Value("${datasource.replica.password}") String replicaPassword) {
+        DataSource primary = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class).build();
+        DataSource replica = DataSourceBuilder.create().type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName()).url(replicaUrl)
+                .username(replicaUsername).password(replicaPassword).build();
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replica));
+    }
+}
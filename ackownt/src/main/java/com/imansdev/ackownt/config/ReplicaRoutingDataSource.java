@@ -0,0 +1,42 @@
+package com.imansdev.ackownt.config;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Sends read-only transactions to the replica unless the current thread asked for the primary.
+// It has to sit behind a LazyConnectionDataSourceProxy: the transaction is only marked read-only
+// after it has begun, so the target must not be picked before the first statement.
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final String PRIMARY = "primary";
+    private static final String REPLICA = "replica";
+    private static final ThreadLocal<Boolean> primaryRequired = new ThreadLocal<>();
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica) {
+        setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    // Keeps the current thread's reads on the primary until cleared
+    public static void requirePrimary(boolean required) {
+        if (required) {
+            primaryRequired.set(Boolean.TRUE);
+        } else {
+            primaryRequired.remove();
+        }
+    }
+
+    // The current thread's choice, for carrying it onto a thread that finishes the request's work
+    public static boolean isPrimaryRequired() {
+        return primaryRequired.get() != null;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && primaryRequired.get() == null ? REPLICA : PRIMARY;
+    }
+}
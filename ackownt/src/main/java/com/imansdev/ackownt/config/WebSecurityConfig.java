@@ -1,7 +1,11 @@
 package com.imansdev.ackownt.config;
 
+import com.imansdev.ackownt.auth.BoundedBCryptPasswordEncoder;
 import com.imansdev.ackownt.auth.JwtAuthorizationFilter;
 import com.imansdev.ackownt.service.CustomUserDetailsService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -27,11 +31,12 @@ public class WebSecurityConfig {
     }
 
     @Bean
-    public AuthenticationManager authenticationManager(HttpSecurity http) throws Exception {
+    public AuthenticationManager authenticationManager(HttpSecurity http,
+            BCryptPasswordEncoder passwordEncoder) throws Exception {
         AuthenticationManagerBuilder authenticationManagerBuilder =
                 http.getSharedObject(AuthenticationManagerBuilder.class);
         authenticationManagerBuilder.userDetailsService(userDetailsService)
-                .passwordEncoder(passwordEncoder());
+                .passwordEncoder(passwordEncoder);
         return authenticationManagerBuilder.build();
     }
 
@@ -39,7 +44,14 @@ public class WebSecurityConfig {
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http.csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(requests -> requests
+                        // Streamed responses finish on an async dispatch of a request that was
+                        // already authorized
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/api/v1/home/login", "/api/v1/home/create").permitAll()
+                        .requestMatchers("/api/v1/settlement")
+                        .hasAuthority(CustomUserDetailsService.SETTLEMENT_AUTHORITY)
+                        .requestMatchers("/api/v1/customer/import", "/api/v1/customer/import/**")
+                        .hasAuthority(CustomUserDetailsService.IMPORT_AUTHORITY)
                         .anyRequest().authenticated())
                 .sessionManagement(
                         session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
@@ -49,8 +61,18 @@ public class WebSecurityConfig {
         return http.build();
     }
 
+    // Hashes on a bounded pool of its own, with a strength calibrated to this machine unless
+    // passwordHashing.strength pins one; see BoundedBCryptPasswordEncoder
     @Bean
-    public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BCryptPasswordEncoder passwordEncoder(MeterRegistry meterRegistry,
+            @Value("${passwordHashing.strength}") int strength,
+            @Value("${passwordHashing.targetMillis}") long targetMillis,
+            @Value("${passwordHashing.minStrength}") int minStrength,
+            @Value("${passwordHashing.threads}") int threads,
+            @Value("${passwordHashing.queueCapacity}") int queueCapacity) {
+        if (strength <= 0) {
+            strength = BoundedBCryptPasswordEncoder.calibrate(targetMillis, minStrength);
+        }
+        return new BoundedBCryptPasswordEncoder(strength, threads, queueCapacity, meterRegistry);
     }
 }
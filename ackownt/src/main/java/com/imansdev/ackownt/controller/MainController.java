@@ -1,19 +1,40 @@
 package com.imansdev.ackownt.controller;
 
+import com.imansdev.ackownt.config.ReplicaRoutingDataSource;
+import com.imansdev.ackownt.dto.CustomerImportReportDTO;
+import com.imansdev.ackownt.dto.SettlementLineDTO;
+import com.imansdev.ackownt.dto.SettlementReportDTO;
 import com.imansdev.ackownt.dto.TransactionDTO;
+import com.imansdev.ackownt.dto.TransactionFilterDTO;
+import com.imansdev.ackownt.dto.TransactionPageDTO;
 import com.imansdev.ackownt.dto.UpdateUserDTO;
 import com.imansdev.ackownt.dto.UserDTO;
+import com.imansdev.ackownt.enums.TransactionType;
 import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.service.CustomerImportService;
+import com.imansdev.ackownt.service.IdempotencyService;
 import com.imansdev.ackownt.service.MainService;
+import com.imansdev.ackownt.service.SettlementService;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.time.LocalDate;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/v1")
@@ -22,6 +43,15 @@ public class MainController {
     @Autowired
     private MainService mainService;
 
+    @Autowired
+    private SettlementService settlementService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private CustomerImportService customerImportService;
+
 
     @PostMapping("/home/create")
     public ResponseEntity<UserDTO> createUser(@Valid @RequestBody Customer user) {
@@ -41,31 +71,112 @@ public class MainController {
         return response;
     }
 
+    @PostMapping("/home/logout")
+    @ResponseBody
+    public String logoutUser(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization) {
+        mainService.logout(authorization.substring(7)); // Remove "Bearer " prefix
+        return "Logged out successfully";
+    }
+
+    @PostMapping("/home/logout-all")
+    @ResponseBody
+    public String logoutUserEverywhere() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String email = authentication.getName();
+
+        mainService.logoutEverywhere(email);
+        return "Logged out of all sessions successfully";
+    }
+
     @PostMapping("/account/create")
     @ResponseBody
-    public TransactionDTO createAccount(@RequestParam("amount") Long amount) {
+    public TransactionDTO createAccount(@RequestParam("amount") Long amount,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String email = authentication.getName();
 
-        return mainService.createAccount(email, amount);
+        return idempotencyService.execute(email, idempotencyKey, "create:" + amount,
+                () -> mainService.createAccount(email, amount));
     }
 
     @PostMapping("/account/transaction/charge")
     @ResponseBody
-    public TransactionDTO chargeAccount(@RequestParam("amount") Long amount) {
+    public TransactionDTO chargeAccount(@RequestParam("amount") Long amount,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String email = authentication.getName();
 
-        return mainService.chargeAccount(email, amount);
+        return idempotencyService.execute(email, idempotencyKey, "charge:" + amount,
+                () -> mainService.chargeAccount(email, amount));
     }
 
     @PostMapping("/account/transaction/deduction")
     @ResponseBody
-    public TransactionDTO deductAmount(@RequestParam("amount") Long amount) {
+    public TransactionDTO deductAmount(@RequestParam("amount") Long amount,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String email = authentication.getName();
+
+        return idempotencyService.execute(email, idempotencyKey, "deduction:" + amount,
+                () -> mainService.deductAmount(email, amount));
+    }
+
+    @PostMapping("/account/transaction/transfer")
+    @ResponseBody
+    public TransactionDTO transfer(@RequestParam("toAccountNumber") String toAccountNumber,
+            @RequestParam("amount") Long amount,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String email = authentication.getName();
+
+        return idempotencyService.execute(email, idempotencyKey,
+                "transfer:" + toAccountNumber + ":" + amount,
+                () -> mainService.transfer(email, toAccountNumber, amount));
+    }
+
+    @PostMapping("/settlement")
+    @ResponseBody
+    public SettlementReportDTO settle(@RequestBody List<SettlementLineDTO> lines,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String email = authentication.getName();
 
-        return mainService.deductAmount(email, amount);
+        String fingerprint = "settlement:" + IdempotencyService.digest(lines.stream()
+                .map(line -> line.getAccountNumber() + "/" + line.getType() + "/" + line.getAmount())
+                .collect(Collectors.joining(",")));
+        return idempotencyService.execute(email, idempotencyKey, fingerprint,
+                () -> settlementService.settle(lines));
+    }
+
+    // Uploading the same file again under the same importId resumes the import
+    @PostMapping(value = "/customer/import",
+            consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    @ResponseBody
+    public CustomerImportReportDTO importCustomers(@RequestParam("importId") String importId,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType, InputStream body)
+            throws IOException {
+        boolean csv = contentType.isCompatibleWith(MediaType.parseMediaType("text/csv"));
+        return customerImportService.importCustomers(importId, csv, body);
+    }
+
+    @GetMapping("/customer/import/{importId}")
+    @ResponseBody
+    public CustomerImportReportDTO getCustomerImport(@PathVariable("importId") String importId) {
+        return customerImportService.getReport(importId);
+    }
+
+    @GetMapping("/customer/import/{importId}/rejections")
+    public ResponseEntity<StreamingResponseBody> exportCustomerImportRejections(
+            @PathVariable("importId") String importId) {
+        // Checked before the response starts, so an unknown import still gets a 400
+        customerImportService.getReport(importId);
+        StreamingResponseBody body = onRequestDatabase(
+                outputStream -> customerImportService.exportRejections(importId, outputStream));
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"rejections.ndjson\"")
+                .body(body);
     }
 
     @GetMapping("/account/transaction/list")
@@ -77,6 +188,48 @@ public class MainController {
         return mainService.getUserAccountInfoAndTransactions(email);
     }
 
+    @GetMapping("/account/transaction/page")
+    @ResponseBody
+    public TransactionPageDTO listUserTransactionsPage(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(
+                    iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(
+                    iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "type", required = false) TransactionType type,
+            @RequestParam(value = "minAmount", required = false) Long minAmount,
+            @RequestParam(value = "maxAmount", required = false) Long maxAmount,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String email = authentication.getName();
+
+        TransactionFilterDTO filter = new TransactionFilterDTO(from, to, type, minAmount, maxAmount);
+        return mainService.getUserTransactionsPage(email, filter, cursor, size);
+    }
+
+    @GetMapping("/account/transaction/export")
+    public ResponseEntity<StreamingResponseBody> exportUserTransactions(
+            @RequestParam(value = "gzip", defaultValue = "false") boolean gzip) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String email = authentication.getName();
+
+        StreamingResponseBody body = onRequestDatabase(outputStream -> {
+            OutputStream target = gzip ? new GZIPOutputStream(outputStream, 8192) : outputStream;
+            mainService.exportUserTransactions(email, target);
+            if (gzip) {
+                ((GZIPOutputStream) target).finish();
+            }
+        });
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON).header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"transactions.ndjson\"");
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
     @GetMapping("/account")
     @ResponseBody
     public UserDTO getUserInfo() {
@@ -104,4 +257,18 @@ public class MainController {
         mainService.deleteUserAndRelatedData(email);
         return "Account and related data deleted successfully";
     }
+
+    // The body is written on another thread, which has to read from the database the request
+    // thread would have
+    private static StreamingResponseBody onRequestDatabase(StreamingResponseBody body) {
+        boolean primaryRequired = ReplicaRoutingDataSource.isPrimaryRequired();
+        return outputStream -> {
+            ReplicaRoutingDataSource.requirePrimary(primaryRequired);
+            try {
+                body.writeTo(outputStream);
+            } finally {
+                ReplicaRoutingDataSource.requirePrimary(false);
+            }
+        };
+    }
 }
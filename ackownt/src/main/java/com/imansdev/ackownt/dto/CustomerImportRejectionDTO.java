@@ -0,0 +1,19 @@
+package com.imansdev.ackownt.dto;
+
+public class CustomerImportRejectionDTO {
+    private long line;
+    private String error;
+
+    public CustomerImportRejectionDTO(long line, String error) {
+        this.line = line;
+        this.error = error;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,39 @@
+package com.imansdev.ackownt.dto;
+
+public class CustomerImportReportDTO {
+    private String importId;
+    private long linesDone;
+    private long imported;
+    private long rejected;
+    private boolean completed;
+
+    public CustomerImportReportDTO(String importId, long linesDone, long imported, long rejected,
+            boolean completed) {
+        this.importId = importId;
+        this.linesDone = linesDone;
+        this.imported = imported;
+        this.rejected = rejected;
+        this.completed = completed;
+    }
+
+    public String getImportId() {
+        return importId;
+    }
+
+    // Lines of the file processed so far, counting a CSV header; a resumed upload skips them
+    public long getLinesDone() {
+        return linesDone;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+}
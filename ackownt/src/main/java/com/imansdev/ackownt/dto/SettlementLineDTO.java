@@ -0,0 +1,27 @@
+package com.imansdev.ackownt.dto;
+
+import com.imansdev.ackownt.enums.TransactionType;
+
+public class SettlementLineDTO {
+    private String accountNumber;
+    private TransactionType type;
+    private Long amount;
+
+    public SettlementLineDTO(String accountNumber, TransactionType type, Long amount) {
+        this.accountNumber = accountNumber;
+        this.type = type;
+        this.amount = amount;
+    }
+
+    public String getAccountNumber() {
+        return accountNumber;
+    }
+
+    public TransactionType getType() {
+        return type;
+    }
+
+    public Long getAmount() {
+        return amount;
+    }
+}
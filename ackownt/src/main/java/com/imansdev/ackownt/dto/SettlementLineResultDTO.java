@@ -0,0 +1,44 @@
+package com.imansdev.ackownt.dto;
+
+public class SettlementLineResultDTO {
+    private int line;
+    private String accountNumber;
+    private String status;
+    private String trackingNumber;
+    private Long withdrawalBalance;
+    private String error;
+
+    public SettlementLineResultDTO(int line, String accountNumber, String status,
+            String trackingNumber, Long withdrawalBalance, String error) {
+        this.line = line;
+        this.accountNumber = accountNumber;
+        this.status = status;
+        this.trackingNumber = trackingNumber;
+        this.withdrawalBalance = withdrawalBalance;
+        this.error = error;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public String getAccountNumber() {
+        return accountNumber;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getTrackingNumber() {
+        return trackingNumber;
+    }
+
+    public Long getWithdrawalBalance() {
+        return withdrawalBalance;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,27 @@
+package com.imansdev.ackownt.dto;
+
+import java.util.List;
+
+public class SettlementReportDTO {
+    private int succeeded;
+    private int failed;
+    private List<SettlementLineResultDTO> results;
+
+    public SettlementReportDTO(int succeeded, int failed, List<SettlementLineResultDTO> results) {
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.results = results;
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public List<SettlementLineResultDTO> getResults() {
+        return results;
+    }
+}
@@ -10,10 +10,11 @@ public class TransactionDTO {
     private LocalDate transactionDate;
     private String description;
     private Long withdrawalBalance;
+    private String transferReference;
 
     public TransactionDTO(String transactionName, String transactionStatus, Long amount,
             String trackingNumber, LocalDate transactionDate, String description,
-            Long withdrawalBalance) {
+            Long withdrawalBalance, String transferReference) {
         this.transactionName = transactionName;
         this.transactionStatus = transactionStatus;
         this.amount = amount;
@@ -21,6 +22,7 @@ public class TransactionDTO {
         this.transactionDate = transactionDate;
         this.description = description;
         this.withdrawalBalance = withdrawalBalance;
+        this.transferReference = transferReference;
     }
 
     public String getTransactionName() {
@@ -52,4 +54,8 @@ public class TransactionDTO {
     public Long getWithdrawalBalance() {
         return withdrawalBalance;
     }
+
+    public String getTransferReference() {
+        return transferReference;
+    }
 }
@@ -0,0 +1,41 @@
+package com.imansdev.ackownt.dto;
+
+import com.imansdev.ackownt.enums.TransactionType;
+import java.time.LocalDate;
+
+public class TransactionFilterDTO {
+    private LocalDate from;
+    private LocalDate to;
+    private TransactionType type;
+    private Long minAmount;
+    private Long maxAmount;
+
+    public TransactionFilterDTO(LocalDate from, LocalDate to, TransactionType type, Long minAmount,
+            Long maxAmount) {
+        this.from = from;
+        this.to = to;
+        this.type = type;
+        this.minAmount = minAmount;
+        this.maxAmount = maxAmount;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public TransactionType getType() {
+        return type;
+    }
+
+    public Long getMinAmount() {
+        return minAmount;
+    }
+
+    public Long getMaxAmount() {
+        return maxAmount;
+    }
+}
@@ -0,0 +1,22 @@
+package com.imansdev.ackownt.dto;
+
+import java.util.List;
+
+public class TransactionPageDTO {
+    private List<TransactionDTO> transactions;
+    private String nextCursor;
+
+    public TransactionPageDTO(List<TransactionDTO> transactions, String nextCursor) {
+        this.transactions = transactions;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<TransactionDTO> getTransactions() {
+        return transactions;
+    }
+
+    // Null when there are no further pages
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
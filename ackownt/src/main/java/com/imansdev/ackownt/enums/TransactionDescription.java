@@ -3,7 +3,8 @@ package com.imansdev.ackownt.enums;
 public enum TransactionDescription {
     CHARGING_SUCCESSFUL("charging was done successfully"), DEDUCTION_SUCCESSFUL(
             "deduction was done successfully"), CHARGING_FAILED(
-                    "charging failed"), DEDUCTION_FAILED("deduction failed");
+                    "charging failed"), DEDUCTION_FAILED("deduction failed"), TRANSFER_SUCCESSFUL(
+                            "transfer was done successfully");
 
     private final String message;
 
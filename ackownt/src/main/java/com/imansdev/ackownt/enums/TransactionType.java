@@ -1,5 +1,5 @@
 package com.imansdev.ackownt.enums;
 
 public enum TransactionType {
-    CHARGE, DEDUCTION
+    CHARGE, DEDUCTION, TRANSFER_OUT, TRANSFER_IN
 }
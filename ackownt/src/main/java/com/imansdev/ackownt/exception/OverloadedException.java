@@ -0,0 +1,9 @@
+package com.imansdev.ackownt.exception;
+
+// Thrown when a bounded resource turns work away instead of queueing it; answered with 503
+public class OverloadedException extends RuntimeException {
+
+    public OverloadedException(String message) {
+        super(message);
+    }
+}
@@ -1,7 +1,7 @@
 package com.imansdev.ackownt.model;
 
-import java.security.SecureRandom;
 import java.time.LocalDate;
+import org.hibernate.annotations.ColumnDefault;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
@@ -10,16 +10,19 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.Min;
 
 @Entity
 public class Account {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_seq")
+    @SequenceGenerator(name = "account_seq", sequenceName = "account_seq", allocationSize = 50)
     private Long id;
 
-    @Column(unique = true, length = 10, nullable = false)
+    @Column(unique = true, length = 12, nullable = false)
     private String accountNumber;
 
     @Min(value = 10_000L, message = "The balance must be a positive number and above 10_000")
@@ -33,18 +36,14 @@ public class Account {
     @JoinColumn(name = "user_id", nullable = false)
     private Customer user;
 
-    private static final SecureRandom secureRandom = new SecureRandom();
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
 
     @PrePersist
     public void prePersist() {
         this.accountCreationDate = LocalDate.now();
-        this.accountNumber = generateAccountNumber();
-    }
-
-    private String generateAccountNumber() {
-
-        long randomNumber = Math.abs(secureRandom.nextLong() % 10_000_000_000L);
-        return String.format("%010d", randomNumber);
     }
 
     public Long getId() {
@@ -67,6 +66,14 @@ public class Account {
         return accountCreationDate;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setAccountNumber(String accountNumber) {
+        this.accountNumber = accountNumber;
+    }
+
     public void setBalance(Long balance) {
         this.balance = balance;
     }
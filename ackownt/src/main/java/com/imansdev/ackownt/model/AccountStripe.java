@@ -0,0 +1,54 @@
+package com.imansdev.ackownt.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+// Credits of a striped account not yet merged into its balance column; the account's balance is
+// the column plus all of its stripes
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"accountId", "stripe"}))
+public class AccountStripe {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Not a foreign key, so stripes can be merged after their account is gone
+    @Column(nullable = false)
+    private Long accountId;
+
+    @Column(nullable = false)
+    private Integer stripe;
+
+    @Column(nullable = false)
+    private Long amount;
+
+    public AccountStripe() {}
+
+    public AccountStripe(Long accountId, Integer stripe) {
+        this.accountId = accountId;
+        this.stripe = stripe;
+        this.amount = 0L;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public Integer getStripe() {
+        return stripe;
+    }
+
+    public Long getAmount() {
+        return amount;
+    }
+}
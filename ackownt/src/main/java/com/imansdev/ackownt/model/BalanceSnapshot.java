@@ -0,0 +1,60 @@
+package com.imansdev.ackownt.model;
+
+import java.time.LocalDateTime;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import org.hibernate.annotations.Immutable;
+
+// Ledger balance of an account over every posting made before coveredUntil; both times are UTC
+@Entity
+@Immutable
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"accountId", "coveredUntil"}))
+public class BalanceSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long accountId;
+
+    @Column(nullable = false)
+    private Long balance;
+
+    @Column(nullable = false)
+    private LocalDateTime coveredUntil;
+
+    @Column(nullable = false)
+    private LocalDateTime takenAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public Long getBalance() {
+        return balance;
+    }
+
+    public LocalDateTime getCoveredUntil() {
+        return coveredUntil;
+    }
+
+    public LocalDateTime getTakenAt() {
+        return takenAt;
+    }
+
+    @Override
+    public String toString() {
+        return "BalanceSnapshot [id=" + id + ", accountId=" + accountId + ", balance=" + balance
+                + ", coveredUntil=" + coveredUntil + ", takenAt=" + takenAt + "]";
+    }
+}
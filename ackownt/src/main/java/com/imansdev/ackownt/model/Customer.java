@@ -8,7 +8,10 @@ import com.imansdev.ackownt.enums.Gender;
 import com.imansdev.ackownt.enums.MilitaryStatus;
 import com.imansdev.ackownt.validation.ValidMilitaryStatus;
 import com.imansdev.ackownt.validation.ValidNationalId;
-import jakarta.persistence.CascadeType;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
@@ -16,7 +19,7 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
-import jakarta.persistence.OneToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Transient;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
@@ -24,10 +27,13 @@ import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Pattern;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NaturalIdCache
 @ValidMilitaryStatus
 public class Customer {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_seq")
+    @SequenceGenerator(name = "customer_seq", sequenceName = "customer_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank(message = "Password is required")
@@ -64,6 +70,8 @@ public class Customer {
     @Email(message = "Invalid email format")
     @NotBlank(message = "Email is required")
     @NotNull
+    // The natural id reuses the column's unique key instead of adding a second one
+    @NaturalId
     @Column(nullable = false, unique = true)
     private String email;
 
@@ -77,10 +85,6 @@ public class Customer {
     @Column(nullable = false)
     private MilitaryStatus militaryStatus;
 
-    @OneToOne(mappedBy = "user", cascade = CascadeType.ALL)
-    @JsonIgnore
-    private Account account;
-
     public Customer() {}
 
     public Long getId() {
@@ -0,0 +1,70 @@
+package com.imansdev.ackownt.model;
+
+import java.time.Instant;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+// Checkpoint of a bulk customer import: how many lines of its file have been processed, and with
+// what result. Moved in the same transaction as the customers each batch inserts.
+@Entity
+public class CustomerImport {
+
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    @Column(nullable = false)
+    private long linesDone;
+
+    @Column(nullable = false)
+    private long imported;
+
+    @Column(nullable = false)
+    private long rejected;
+
+    @Column(nullable = false)
+    private boolean completed;
+
+    @Column(nullable = false)
+    private Instant updatedAt;
+
+    public CustomerImport() {}
+
+    public CustomerImport(String id) {
+        this.id = id;
+        this.updatedAt = Instant.now();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getLinesDone() {
+        return linesDone;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void advance(long linesDone, long imported, long rejected, boolean completed) {
+        this.linesDone = linesDone;
+        this.imported += imported;
+        this.rejected += rejected;
+        this.completed = completed;
+        this.updatedAt = Instant.now();
+    }
+}
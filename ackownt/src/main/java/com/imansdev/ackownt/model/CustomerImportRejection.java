@@ -0,0 +1,57 @@
+package com.imansdev.ackownt.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import org.hibernate.annotations.Immutable;
+
+// A line of a bulk customer import that was not imported, and why
+@Entity
+@Immutable
+@Table(indexes = @Index(columnList = "importId, line"))
+public class CustomerImportRejection {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_import_rejection_seq")
+    @SequenceGenerator(name = "customer_import_rejection_seq",
+            sequenceName = "customer_import_rejection_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(length = 64, nullable = false)
+    private String importId;
+
+    @Column(nullable = false)
+    private long line;
+
+    @Column(length = 1000, nullable = false)
+    private String error;
+
+    public CustomerImportRejection() {}
+
+    public CustomerImportRejection(String importId, long line, String error) {
+        this.importId = importId;
+        this.line = line;
+        this.error = error.length() > 1000 ? error.substring(0, 1000) : error;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getImportId() {
+        return importId;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,62 @@
+package com.imansdev.ackownt.model;
+
+import java.time.LocalDate;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+// Running total of a user's deductions for one day, reserved together with the balance update
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "deductionDate"}))
+public class DailyDeduction {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "user_id", nullable = false)
+    private Customer user;
+
+    @Column(nullable = false)
+    private LocalDate deductionDate;
+
+    @Column(nullable = false)
+    private Long total;
+
+    public DailyDeduction() {}
+
+    public DailyDeduction(Customer user, LocalDate deductionDate, Long total) {
+        this.user = user;
+        this.deductionDate = deductionDate;
+        this.total = total;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Customer getUser() {
+        return user;
+    }
+
+    public LocalDate getDeductionDate() {
+        return deductionDate;
+    }
+
+    public Long getTotal() {
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "DailyDeduction [id=" + id + ", deductionDate=" + deductionDate + ", total=" + total
+                + "]";
+    }
+}
@@ -0,0 +1,82 @@
+package com.imansdev.ackownt.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import org.hibernate.annotations.Immutable;
+
+// One side of a ledger entry; the postings sharing an entryReference always sum to zero
+@Entity
+@Immutable
+@Table(indexes = @Index(name = "idx_ledger_posting_account_posted",
+        columnList = "accountId, postedAt"),
+        uniqueConstraints = @UniqueConstraint(columnNames = {"entryReference", "accountId"}))
+public class LedgerPosting {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ledger_posting_seq")
+    @SequenceGenerator(name = "ledger_posting_seq", sequenceName = "ledger_posting_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, length = 36)
+    private String entryReference;
+
+    // Not a foreign key: the clearing account has no Account row and postings outlive accounts
+    @Column(nullable = false)
+    private Long accountId;
+
+    @Column(nullable = false)
+    private Long amount;
+
+    // UTC, so the order of postings and snapshot cutoffs survives daylight saving changes
+    @Column(nullable = false)
+    private LocalDateTime postedAt;
+
+    public LedgerPosting() {}
+
+    public LedgerPosting(String entryReference, Long accountId, Long amount) {
+        this.entryReference = entryReference;
+        this.accountId = accountId;
+        this.amount = amount;
+    }
+
+    @PrePersist
+    public void prePersist() {
+        this.postedAt = LocalDateTime.now(ZoneOffset.UTC);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getEntryReference() {
+        return entryReference;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public Long getAmount() {
+        return amount;
+    }
+
+    public LocalDateTime getPostedAt() {
+        return postedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "LedgerPosting [id=" + id + ", entryReference=" + entryReference + ", accountId="
+                + accountId + ", amount=" + amount + ", postedAt=" + postedAt + "]";
+    }
+}
@@ -0,0 +1,71 @@
+package com.imansdev.ackownt.model;
+
+import java.time.Instant;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import org.hibernate.annotations.Immutable;
+
+// A revoked token, identified by its signature, or without one every token issued to the email
+// up to revokedAt. Kept until expiresAt, when the revoked tokens have expired anyway.
+@Entity
+@Immutable
+@Table(indexes = {@Index(columnList = "revokedAt"), @Index(columnList = "expiresAt")})
+public class TokenRevocation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 128)
+    private String tokenSignature;
+
+    @Column(nullable = false)
+    private String email;
+
+    @Column(nullable = false)
+    private Instant revokedAt;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+
+    public TokenRevocation() {}
+
+    public TokenRevocation(String tokenSignature, String email, Instant revokedAt,
+            Instant expiresAt) {
+        this.tokenSignature = tokenSignature;
+        this.email = email;
+        this.revokedAt = revokedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getTokenSignature() {
+        return tokenSignature;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public Instant getRevokedAt() {
+        return revokedAt;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenRevocation [id=" + id + ", email=" + email + ", revokedAt=" + revokedAt
+                + ", expiresAt=" + expiresAt + "]";
+    }
+}
@@ -1,6 +1,5 @@
 package com.imansdev.ackownt.model;
 
-import java.security.SecureRandom;
 import java.time.LocalDate;
 import com.imansdev.ackownt.enums.TransactionDescription;
 import com.imansdev.ackownt.enums.TransactionStatus;
@@ -12,16 +11,24 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.Min;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_transaction_user_date_id", columnList = "user_id, transactionDate, id"),
+        @Index(name = "idx_transaction_user_type_date",
+                columnList = "user_id, transactionName, transactionDate")})
 public class Transaction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_seq")
+    @SequenceGenerator(name = "transaction_seq", sequenceName = "transaction_seq", allocationSize = 50)
     private Long id;
 
     @Enumerated(EnumType.STRING)
@@ -36,7 +43,7 @@ public class Transaction {
     @Column(nullable = false)
     private Long amount;
 
-    @Column(unique = true, length = 6)
+    @Column(unique = true, length = 12)
     private String trackingNumber;
 
     @Column(nullable = false, updatable = false)
@@ -49,21 +56,23 @@ public class Transaction {
     @Column(nullable = false)
     private Long withdrawalBalance;
 
+    // Shared by the two rows of a transfer
+    @Column(length = 36)
+    private String transferReference;
+
     @ManyToOne
     @JoinColumn(name = "user_id", nullable = false)
     private Customer user;
 
-    private static final SecureRandom secureRandom = new SecureRandom();
-
     @PrePersist
     public void prePersist() {
-        this.transactionDate = LocalDate.now();
-        this.trackingNumber = generateTrackingNumber();
+        if (this.transactionDate == null) {
+            this.transactionDate = LocalDate.now();
+        }
     }
 
-    private String generateTrackingNumber() {
-        long randomNumber = Math.abs(secureRandom.nextInt(1_000_000));
-        return String.format("%06d", randomNumber);
+    public void setTrackingNumber(String trackingNumber) {
+        this.trackingNumber = trackingNumber;
     }
 
     public void setTransactionName(TransactionType transactionName) {
@@ -78,6 +87,10 @@ public class Transaction {
         this.amount = amount;
     }
 
+    public void setTransactionDate(LocalDate transactionDate) {
+        this.transactionDate = transactionDate;
+    }
+
     public void setDescription(TransactionDescription description) {
         this.description = description;
     }
@@ -86,6 +99,10 @@ public class Transaction {
         this.withdrawalBalance = withdrawalBalance;
     }
 
+    public void setTransferReference(String transferReference) {
+        this.transferReference = transferReference;
+    }
+
     public Long getId() {
         return id;
     }
@@ -118,6 +135,10 @@ public class Transaction {
         return withdrawalBalance;
     }
 
+    public String getTransferReference() {
+        return transferReference;
+    }
+
     public Customer getUser() {
         return user;
     }
@@ -132,7 +153,7 @@ public class Transaction {
                 + ", transactionStatus=" + transactionStatus + ", amount=" + amount
                 + ", trackingNumber=" + trackingNumber + ", transactionDate=" + transactionDate
                 + ", description=" + description + ", withdrawalBalance=" + withdrawalBalance
-                + ", user=" + user + "]";
+                + ", transferReference=" + transferReference + ", user=" + user + "]";
     }
 
 
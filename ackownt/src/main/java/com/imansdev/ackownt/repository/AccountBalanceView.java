@@ -0,0 +1,11 @@
+package com.imansdev.ackownt.repository;
+
+// Scalar projection of an account row, always read from the database and never from the
+// persistence context
+public interface AccountBalanceView {
+    Long getId();
+
+    Long getBalance();
+
+    Long getVersion();
+}
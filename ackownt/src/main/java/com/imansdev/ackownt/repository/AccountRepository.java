@@ -1,9 +1,53 @@
 package com.imansdev.ackownt.repository;
 
 import java.util.Optional;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
 import com.imansdev.ackownt.model.Account;
 
 public interface AccountRepository extends JpaRepository<Account, Long> {
     Optional<Account> findByUserId(Long userId);
+
+    @Query("SELECT a.id FROM Account a WHERE a.user.id = :userId")
+    Optional<Long> findIdByUserId(Long userId);
+
+    Optional<Account> findByAccountNumber(String accountNumber);
+
+    Optional<AccountBalanceView> findBalanceByUserId(Long userId);
+
+    boolean existsByUserId(Long userId);
+
+    // Single conditional UPDATE that hands back the new balance (H2 data change delta table)
+    @Query(value = "SELECT balance FROM FINAL TABLE (UPDATE account SET balance = balance + :amount, version = version + 1 WHERE user_id = :userId)",
+            nativeQuery = true)
+    Optional<Long> creditAndGetBalance(Long userId, Long amount);
+
+    @Query(value = "SELECT balance FROM FINAL TABLE (UPDATE account SET balance = balance - :amount, version = version + 1 WHERE user_id = :userId AND balance - :minBalance >= :amount)",
+            nativeQuery = true)
+    Optional<Long> debitAndGetBalance(Long userId, Long amount, Long minBalance);
+
+    @Query(value = "SELECT id FROM account WHERE user_id = :userId FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockIdByUserId(Long userId);
+
+    @Query(value = "SELECT balance FROM account WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockBalanceById(Long id);
+
+    // Names the table it writes, so Hibernate does not clear the whole second-level cache
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "account"))
+    @Query(value = "UPDATE account SET balance = balance + :amount, version = version + 1 WHERE id = :id",
+            nativeQuery = true)
+    int addToBalance(Long id, Long amount);
+
+    @Modifying
+    @Query("DELETE FROM Account a WHERE a.user.id = :userId")
+    void deleteByUserId(Long userId);
+
+    @Modifying
+    @Query("UPDATE Account a SET a.balance = :balance, a.version = a.version + 1 WHERE a.id = :id AND a.version = :version")
+    int compareAndSetBalance(Long id, Long balance, Long version);
 }
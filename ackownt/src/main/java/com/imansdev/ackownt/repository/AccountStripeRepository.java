@@ -0,0 +1,56 @@
+package com.imansdev.ackownt.repository;
+
+import com.imansdev.ackownt.model.AccountStripe;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
+
+public interface AccountStripeRepository extends JpaRepository<AccountStripe, Long> {
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "account_stripe"))
+    @Query(value = "UPDATE account_stripe SET amount = amount + :amount WHERE account_id = :accountId AND stripe = :stripe",
+            nativeQuery = true)
+    int credit(Long accountId, Integer stripe, Long amount);
+
+    @Query(value = "SELECT COALESCE(SUM(amount), 0) FROM account_stripe WHERE account_id = :accountId",
+            nativeQuery = true)
+    long sumByAccountId(Long accountId);
+
+    // Rows of [account id, sum of its stripes]
+    @Query(value = "SELECT account_id, SUM(amount) FROM account_stripe WHERE account_id IN (:accountIds) GROUP BY account_id",
+            nativeQuery = true)
+    List<Object[]> sumByAccountIds(Collection<Long> accountIds);
+
+    // Balance column plus stripes, read without waiting on writers
+    @Query(value = "SELECT a.balance + COALESCE((SELECT SUM(s.amount) FROM account_stripe s WHERE s.account_id = a.id), 0) FROM account a WHERE a.id = :accountId",
+            nativeQuery = true)
+    Optional<Long> findTotal(Long accountId);
+
+    // Rows of [stripe id, amount] for the stripes no credit is writing to at the moment
+    @Query(value = "SELECT id, amount FROM account_stripe WHERE account_id = :accountId AND amount <> 0 FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<Object[]> lockIdle(Long accountId);
+
+    // Rows of [stripe id, amount] for the rest, waiting for the credits writing to them
+    @Query(value = "SELECT id, amount FROM account_stripe WHERE account_id = :accountId AND amount <> 0 FOR UPDATE",
+            nativeQuery = true)
+    List<Object[]> lockAll(Long accountId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "account_stripe"))
+    @Query(value = "UPDATE account_stripe SET amount = 0 WHERE id IN (:ids)", nativeQuery = true)
+    int clear(Collection<Long> ids);
+
+    List<AccountStripe> findByAccountIdIn(Collection<Long> accountIds);
+
+    @Modifying
+    @Query("DELETE FROM AccountStripe s WHERE s.accountId = :accountId")
+    int deleteByAccountId(Long accountId);
+}
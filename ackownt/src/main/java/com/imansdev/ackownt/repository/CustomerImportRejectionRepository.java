@@ -0,0 +1,19 @@
+package com.imansdev.ackownt.repository;
+
+import com.imansdev.ackownt.model.CustomerImportRejection;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
+
+public interface CustomerImportRejectionRepository
+        extends JpaRepository<CustomerImportRejection, Long> {
+
+    // Server-side cursor in line order; must be consumed in a transaction
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT r FROM CustomerImportRejection r WHERE r.importId = :importId ORDER BY r.line")
+    Stream<CustomerImportRejection> streamByImportId(String importId);
+}
@@ -0,0 +1,16 @@
+package com.imansdev.ackownt.repository;
+
+import com.imansdev.ackownt.model.CustomerImport;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import jakarta.persistence.LockModeType;
+
+public interface CustomerImportRepository extends JpaRepository<CustomerImport, String> {
+
+    // Held until the batch commits, so two uploads of one import cannot both write it
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM CustomerImport i WHERE i.id = :id")
+    Optional<CustomerImport> lockById(String id);
+}
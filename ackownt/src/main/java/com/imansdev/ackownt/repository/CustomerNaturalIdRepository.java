@@ -0,0 +1,9 @@
+package com.imansdev.ackownt.repository;
+
+import java.util.Optional;
+import com.imansdev.ackownt.model.Customer;
+
+// Lookups by email that go through the natural-id cache instead of a query
+public interface CustomerNaturalIdRepository {
+    Optional<Customer> findByEmail(String email);
+}
@@ -0,0 +1,23 @@
+package com.imansdev.ackownt.repository;
+
+import java.util.Optional;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+import com.imansdev.ackownt.model.Customer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+class CustomerNaturalIdRepositoryImpl implements CustomerNaturalIdRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Resolves the id from the natural-id cache and the row from the entity cache; only a miss
+    // reaches the database
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Customer> findByEmail(String email) {
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(Customer.class)
+                .loadOptional(email);
+    }
+}
@@ -1,15 +1,43 @@
 package com.imansdev.ackownt.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import com.imansdev.ackownt.model.Customer;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 
-public interface CustomerRepository extends JpaRepository<Customer, Long> {
-
-    Optional<Customer> findByEmail(String email);
+public interface CustomerRepository
+        extends JpaRepository<Customer, Long>, CustomerNaturalIdRepository {
 
     Optional<Customer> findByPhoneNumber(String phoneNumber);
 
-    Optional<Customer> findByNationalId(String nationalId);
+    // Every customer holding any of the three values, so one query tells which of them are taken
+    List<CustomerUniqueKeys> findByEmailOrPhoneNumberOrNationalId(String email,
+            String phoneNumber, String nationalId);
+
+    // The same for a whole batch of registrations
+    List<CustomerUniqueKeys> findByEmailInOrPhoneNumberInOrNationalIdIn(Collection<String> emails,
+            Collection<String> phoneNumbers, Collection<String> nationalIds);
+
+    // Server-side cursor over all customers; must be consumed in a transaction
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT c.email AS email, c.phoneNumber AS phoneNumber, c.nationalId AS nationalId FROM Customer c")
+    Stream<CustomerUniqueKeys> streamUniqueKeys();
+
+    @Query("SELECT c.id FROM Customer c WHERE c.id IN :ids")
+    List<Long> findExistingIds(Collection<Long> ids);
+
+    // Reads the row itself rather than the cached copy, and keeps it until the transaction ends
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Customer c WHERE c.id = :id")
+    Optional<Customer> lockById(Long id);
 
 }
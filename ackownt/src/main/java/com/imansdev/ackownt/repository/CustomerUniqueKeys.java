@@ -0,0 +1,10 @@
+package com.imansdev.ackownt.repository;
+
+// The unique columns of a customer row, read without loading the entity
+public interface CustomerUniqueKeys {
+    String getEmail();
+
+    String getPhoneNumber();
+
+    String getNationalId();
+}
@@ -0,0 +1,41 @@
+package com.imansdev.ackownt.repository;
+
+import com.imansdev.ackownt.model.DailyDeduction;
+import java.time.LocalDate;
+import java.util.Optional;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface DailyDeductionRepository extends JpaRepository<DailyDeduction, Long> {
+
+    // Adds the amount to the day's total only if the limit still holds
+    @Modifying
+    @Query("UPDATE DailyDeduction d SET d.total = d.total + :amount WHERE d.user.id = :userId AND d.deductionDate = :date AND d.total + :amount <= :limit")
+    int reserve(Long userId, LocalDate date, Long amount, Long limit);
+
+    boolean existsByUserIdAndDeductionDate(Long userId, LocalDate date);
+
+    Optional<DailyDeduction> findByUserIdAndDeductionDate(Long userId, LocalDate date);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM DailyDeduction d WHERE d.user.id = :userId")
+    void deleteByUserId(Long userId);
+
+    // Creates the day's missing totals from its DEDUCTION and outgoing transfer history
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "daily_deduction"))
+    @Query(value = "INSERT INTO daily_deduction (user_id, deduction_date, total) "
+            + "SELECT t.user_id, t.transaction_date, SUM(t.amount) FROM transaction t "
+            + "WHERE t.transaction_date = :day AND t.transaction_name IN ('DEDUCTION', 'TRANSFER_OUT') "
+            + "AND NOT EXISTS (SELECT 1 FROM daily_deduction d "
+            + "WHERE d.user_id = t.user_id AND d.deduction_date = t.transaction_date) "
+            + "GROUP BY t.user_id, t.transaction_date", nativeQuery = true)
+    int backfillFromTransactions(LocalDate day);
+}
@@ -0,0 +1,65 @@
+package com.imansdev.ackownt.repository;
+
+import com.imansdev.ackownt.model.LedgerPosting;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
+
+public interface LedgerPostingRepository extends JpaRepository<LedgerPosting, Long> {
+
+    // Latest snapshot of each account plus every posting made since it was covered
+    String BALANCE_QUERY = "SELECT a.id, COALESCE(s.balance, 0) + COALESCE((SELECT SUM(p.amount) "
+            + "FROM ledger_posting p WHERE p.account_id = a.id "
+            + "AND p.posted_at >= COALESCE(s.covered_until, TIMESTAMP '1970-01-01 00:00:00')), 0) "
+            + "FROM account a LEFT JOIN balance_snapshot s ON s.account_id = a.id "
+            + "AND s.covered_until = (SELECT MAX(m.covered_until) FROM balance_snapshot m "
+            + "WHERE m.account_id = a.id) ";
+
+    // Rows of [account id, balance]
+    @Query(value = BALANCE_QUERY + "WHERE a.id IN (:accountIds)", nativeQuery = true)
+    List<Object[]> findBalances(Collection<Long> accountIds);
+
+    // Rolls the postings made before the cutoff into a new snapshot per account
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "balance_snapshot"))
+    @Query(value = "INSERT INTO balance_snapshot (account_id, balance, covered_until, taken_at) "
+            + "SELECT p.account_id, COALESCE(s.balance, 0) + SUM(p.amount), :cutoff, :now "
+            + "FROM ledger_posting p LEFT JOIN balance_snapshot s ON s.account_id = p.account_id "
+            + "AND s.covered_until = (SELECT MAX(m.covered_until) FROM balance_snapshot m "
+            + "WHERE m.account_id = p.account_id) "
+            + "WHERE p.posted_at >= COALESCE(s.covered_until, TIMESTAMP '1970-01-01 00:00:00') "
+            + "AND p.posted_at < :cutoff GROUP BY p.account_id, s.balance", nativeQuery = true)
+    int snapshot(LocalDateTime cutoff, LocalDateTime now);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "balance_snapshot"))
+    @Query(value = "DELETE FROM balance_snapshot WHERE covered_until > :now", nativeQuery = true)
+    int deleteSnapshotsCoveredAfter(LocalDateTime now);
+
+    // Opens every account that has no opening entry yet with its current balance column
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "ledger_posting"))
+    @Query(value = "INSERT INTO ledger_posting (id, entry_reference, account_id, amount, posted_at) "
+            + "SELECT NEXT VALUE FOR ledger_posting_seq, CONCAT('opening-', a.id), a.id, a.balance, :now "
+            + "FROM account a WHERE NOT EXISTS (SELECT 1 FROM ledger_posting p "
+            + "WHERE p.entry_reference = CONCAT('opening-', a.id) AND p.account_id = a.id)",
+            nativeQuery = true)
+    int openMissingAccounts(LocalDateTime now);
+
+    // Adds the clearing side to the opening entries written by openMissingAccounts
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "ledger_posting"))
+    @Query(value = "INSERT INTO ledger_posting (id, entry_reference, account_id, amount, posted_at) "
+            + "SELECT NEXT VALUE FOR ledger_posting_seq, p.entry_reference, :clearingAccountId, -p.amount, p.posted_at "
+            + "FROM ledger_posting p WHERE p.entry_reference LIKE 'opening-%' "
+            + "AND p.account_id <> :clearingAccountId AND NOT EXISTS (SELECT 1 FROM ledger_posting c "
+            + "WHERE c.entry_reference = p.entry_reference AND c.account_id = :clearingAccountId)",
+            nativeQuery = true)
+    int balanceOpeningEntries(Long clearingAccountId);
+}
@@ -0,0 +1,21 @@
+package com.imansdev.ackownt.repository;
+
+import com.imansdev.ackownt.model.TokenRevocation;
+import java.time.Instant;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface TokenRevocationRepository extends JpaRepository<TokenRevocation, Long> {
+
+    // Revocations made since the given time that are still in force
+    List<TokenRevocation> findByRevokedAtGreaterThanEqualAndExpiresAtAfter(Instant revokedSince,
+            Instant now);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM TokenRevocation r WHERE r.expiresAt <= :now")
+    int deleteExpired(Instant now);
+}
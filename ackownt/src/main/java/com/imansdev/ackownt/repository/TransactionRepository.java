@@ -1,20 +1,47 @@
 package com.imansdev.ackownt.repository;
 
+import com.imansdev.ackownt.enums.TransactionType;
 import com.imansdev.ackownt.model.Transaction;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
 import org.springframework.transaction.annotation.Transactional;
 
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
-    @Query("SELECT COALESCE(SUM(t.amount), 0) FROM Transaction t WHERE t.user.id = :userId AND t.transactionName = 'DEDUCTION' AND t.transactionDate = :date")
-    Long findTotalDailyDeductions(Long userId, LocalDate date);
-
-    @Query("SELECT t FROM Transaction t WHERE t.user.id = :userId ORDER BY t.transactionDate DESC")
+    @Query("SELECT t FROM Transaction t WHERE t.user.id = :userId ORDER BY t.transactionDate DESC, t.id DESC")
     List<Transaction> findByUserId(Long userId);
 
+    // Keyset page ordered by (transactionDate, id) descending; null filters and cursor are ignored
+    @Query("SELECT t FROM Transaction t WHERE t.user.id = :userId"
+            + " AND (:from IS NULL OR t.transactionDate >= :from)"
+            + " AND (:to IS NULL OR t.transactionDate <= :to)"
+            + " AND (:type IS NULL OR t.transactionName = :type)"
+            + " AND (:minAmount IS NULL OR t.amount >= :minAmount)"
+            + " AND (:maxAmount IS NULL OR t.amount <= :maxAmount)"
+            + " AND (:cursorDate IS NULL OR t.transactionDate < :cursorDate"
+            + " OR (t.transactionDate = :cursorDate AND t.id < :cursorId))"
+            + " ORDER BY t.transactionDate DESC, t.id DESC")
+    List<Transaction> findPage(Long userId, LocalDate from, LocalDate to, TransactionType type,
+            Long minAmount, Long maxAmount, LocalDate cursorDate, Long cursorId,
+            Pageable pageable);
+
+    // Server-side cursor over the whole history, oldest first; must be consumed in a transaction
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT t FROM Transaction t WHERE t.user.id = :userId ORDER BY t.transactionDate, t.id")
+    Stream<Transaction> streamByUserId(Long userId);
+
+    @Query("SELECT t.trackingNumber FROM Transaction t WHERE t.trackingNumber IN :trackingNumbers")
+    List<String> findExistingTrackingNumbers(Collection<String> trackingNumbers);
+
     @Modifying
     @Transactional
     @Query("DELETE FROM Transaction t WHERE t.user.id = :userId")
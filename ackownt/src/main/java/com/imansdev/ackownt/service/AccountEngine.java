@@ -0,0 +1,506 @@
+package com.imansdev.ackownt.service;
+
+import com.imansdev.ackownt.dto.TransactionDTO;
+import com.imansdev.ackownt.enums.TransactionDescription;
+import com.imansdev.ackownt.enums.TransactionStatus;
+import com.imansdev.ackownt.enums.TransactionType;
+import com.imansdev.ackownt.model.Account;
+import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.model.DailyDeduction;
+import com.imansdev.ackownt.model.Transaction;
+import com.imansdev.ackownt.repository.AccountBalanceView;
+import com.imansdev.ackownt.repository.AccountRepository;
+import com.imansdev.ackownt.repository.CustomerRepository;
+import com.imansdev.ackownt.repository.DailyDeductionRepository;
+import com.imansdev.ackownt.repository.TransactionRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ValidationException;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * In-memory engine for charges and deductions, enabled with {@code account.engine=memory}. Users
+ * are split over {@code engine.partitions} partitions, each owning the balances and daily
+ * deduction totals of its users and applying their commands on a single writer thread, so no
+ * locks are taken. A writer drains whatever commands are queued, applies them, appends the
+ * results to its memory-mapped {@link AccountEngineLog} and forces the log once for the whole
+ * batch before answering any caller.
+ *
+ * <p>The account, daily deduction and transaction tables are a projection: a background thread
+ * writes applied records to them in batches, so they trail the engine. When a partition's log is
+ * full it waits for the projection to catch up, snapshots its state and starts the log over. On
+ * startup each partition loads its snapshot, replays the records logged after it and projects
+ * them again. Users the engine has not seen yet are loaded from the database on first use; a
+ * database error there fails only the command that needed the user.
+ *
+ * <p>Transfers and settlements still work on the database directly, so they are refused while the
+ * engine is enabled.
+ */
+@Component
+@ConditionalOnProperty(name = "account.engine", havingValue = "memory")
+@DependsOn("entityManagerFactory")
+public class AccountEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountEngine.class);
+
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private DailyDeductionRepository dailyDeductionRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private IdGenerator idGenerator;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${account.minBalance}")
+    private long minBalance;
+    @Value("${account.maxWithdrawal}")
+    private long maxWithdrawal;
+    @Value("${account.balanceStrategy:conditional}")
+    private String balanceStrategy;
+
+    private final TransactionTemplate transactionTemplate;
+    private final Path directory;
+    private final int logRecords;
+    private final int batchSize;
+    private final Partition[] partitions;
+    private final BlockingQueue<AccountEngineRecord> projection = new LinkedBlockingQueue<>();
+    private final DistributionSummary batchSizes;
+    private Thread projector;
+    private volatile boolean projecting = true;
+
+    public AccountEngine(PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry, @Value("${engine.partitions}") int partitions,
+            @Value("${engine.directory}") String directory,
+            @Value("${engine.logRecords}") int logRecords,
+            @Value("${engine.batchSize}") int batchSize) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.directory = Paths.get(directory);
+        this.logRecords = logRecords;
+        this.batchSize = batchSize;
+        this.partitions = new Partition[partitions];
+        this.batchSizes = DistributionSummary.builder("account.engine.batch.size")
+                .description("Commands applied per log force").register(meterRegistry);
+        Gauge.builder("account.engine.projection.lag", this, AccountEngine::projectionLag)
+                .description("Applied commands not yet written to the database")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        if ("ledger".equals(balanceStrategy)) {
+            throw new IllegalStateException(
+                    "The in-memory account engine cannot be combined with the ledger strategy");
+        }
+        Files.createDirectories(directory);
+        projector = new Thread(this::project, "account-engine-projector");
+        projector.start();
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new Partition(i);
+            partitions[i].recover();
+            partitions[i].thread.start();
+        }
+    }
+
+    @PreDestroy
+    void stop() throws Exception {
+        for (Partition partition : partitions) {
+            partition.running = false;
+        }
+        for (Partition partition : partitions) {
+            partition.thread.join();
+        }
+        // A clean shutdown leaves nothing to replay
+        for (Partition partition : partitions) {
+            if (!partition.failed) {
+                partition.checkpoint();
+            }
+            partition.log.close();
+        }
+        projecting = false;
+        projector.join();
+    }
+
+    public TransactionDTO charge(Long userId, long amount) {
+        return submit(new Command(TransactionType.CHARGE, userId, amount));
+    }
+
+    public TransactionDTO deduct(Long userId, long amount) {
+        return submit(new Command(TransactionType.DEDUCTION, userId, amount));
+    }
+
+    // The engine's balance when it owns the account, otherwise the stored one
+    public long balance(Account account) {
+        Long userId = account.getUser().getId();
+        AccountState state = partitionOf(userId).accounts.get(userId);
+        return state != null ? state.balance : account.getBalance();
+    }
+
+    private TransactionDTO submit(Command command) {
+        Partition partition = partitionOf(command.userId);
+        if (partition.failed) {
+            throw new IllegalStateException("Account engine partition " + partition.index
+                    + " has failed; restart to recover it from its log");
+        }
+        try {
+            partition.queue.put(command);
+            if (partition.failed) {
+                // The writer may have stopped before it could see this command
+                partition.failQueued();
+            }
+            return command.result.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the account engine", e);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private Partition partitionOf(Long userId) {
+        return partitions[(int) Math.floorMod(userId, (long) partitions.length)];
+    }
+
+    private long projectionLag() {
+        return Arrays.stream(partitions).filter(partition -> partition != null)
+                .mapToLong(partition -> partition.durableSeq - partition.projectedSeq).sum();
+    }
+
+    private TransactionDTO toTransactionDTO(AccountEngineRecord record) {
+        return new TransactionDTO(record.type.toString(), TransactionStatus.SUCCESSFUL.toString(),
+                record.amount, record.trackingNumber, record.date,
+                description(record).toString(), record.balance - minBalance, null);
+    }
+
+    private static TransactionDescription description(AccountEngineRecord record) {
+        return record.type == TransactionType.CHARGE ? TransactionDescription.CHARGING_SUCCESSFUL
+                : TransactionDescription.DEDUCTION_SUCCESSFUL;
+    }
+
+    // Writes applied records to the database in batches, retrying a batch until it succeeds
+    private void project() {
+        while (projecting || !projection.isEmpty()) {
+            List<AccountEngineRecord> batch = new ArrayList<>();
+            try {
+                AccountEngineRecord first = projection.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                projection.drainTo(batch, batchSize - 1);
+                while (true) {
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> projectBatch(batch));
+                        break;
+                    } catch (RuntimeException e) {
+                        logger.error("Projecting account engine records failed, will retry", e);
+                        Thread.sleep(1000);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            // Each partition enqueues in sequence order, so the last record is the highest
+            for (AccountEngineRecord record : batch) {
+                partitionOf(record.userId).projectedSeq = record.seq;
+            }
+        }
+    }
+
+    private void projectBatch(List<AccountEngineRecord> batch) {
+        Set<Long> users = new HashSet<>(customerRepository.findExistingIds(
+                batch.stream().map(record -> record.userId).collect(Collectors.toSet())));
+        Set<String> stored = new HashSet<>(transactionRepository.findExistingTrackingNumbers(
+                batch.stream().map(record -> record.trackingNumber).collect(Collectors.toList())));
+        Map<Long, AccountEngineRecord> latestBalances = new LinkedHashMap<>();
+        Map<List<Object>, AccountEngineRecord> latestDailyTotals = new LinkedHashMap<>();
+
+        for (AccountEngineRecord record : batch) {
+            if (!users.contains(record.userId)) {
+                continue;
+            }
+            latestBalances.put(record.userId, record);
+            if (record.type == TransactionType.DEDUCTION) {
+                latestDailyTotals.put(List.of(record.userId, record.date), record);
+            }
+            if (!stored.contains(record.trackingNumber)) {
+                Transaction transaction = new Transaction();
+                transaction.setUser(entityManager.getReference(Customer.class, record.userId));
+                transaction.setTrackingNumber(record.trackingNumber);
+                transaction.setTransactionName(record.type);
+                transaction.setTransactionStatus(TransactionStatus.SUCCESSFUL);
+                transaction.setAmount(record.amount);
+                transaction.setTransactionDate(record.date);
+                transaction.setDescription(description(record));
+                transaction.setWithdrawalBalance(record.balance - minBalance);
+                entityManager.persist(transaction);
+            }
+        }
+
+        jdbcTemplate.batchUpdate("UPDATE account SET balance = ?, version = version + 1 "
+                + "WHERE user_id = ?", latestBalances.values().stream()
+                        .map(record -> new Object[] {record.balance, record.userId})
+                        .collect(Collectors.toList()));
+        jdbcTemplate.batchUpdate("MERGE INTO daily_deduction (user_id, deduction_date, total) "
+                + "KEY (user_id, deduction_date) VALUES (?, ?, ?)",
+                latestDailyTotals.values().stream()
+                        .map(record -> new Object[] {record.userId, Date.valueOf(record.date),
+                                record.dailyTotal})
+                        .collect(Collectors.toList()));
+    }
+
+    private static final class Command {
+        private final TransactionType type;
+        private final Long userId;
+        private final long amount;
+        private final CompletableFuture<TransactionDTO> result = new CompletableFuture<>();
+
+        private Command(TransactionType type, Long userId, long amount) {
+            this.type = type;
+            this.userId = userId;
+            this.amount = amount;
+        }
+    }
+
+    private static final class AccountState {
+        // Written by the partition's writer thread only
+        private volatile long balance;
+        private LocalDate dailyDate;
+        private long dailyTotal;
+
+        private AccountState(long balance, LocalDate dailyDate, long dailyTotal) {
+            this.balance = balance;
+            this.dailyDate = dailyDate;
+            this.dailyTotal = dailyTotal;
+        }
+    }
+
+    private final class Partition implements Runnable {
+        private final int index;
+        private final BlockingQueue<Command> queue;
+        private final Map<Long, AccountState> accounts = new ConcurrentHashMap<>();
+        private final AccountEngineLog log;
+        private final Path snapshotPath;
+        private final Thread thread;
+        private long seq;
+        private volatile long durableSeq;
+        private volatile long projectedSeq;
+        private volatile boolean running = true;
+        private volatile boolean failed;
+
+        private Partition(int index) throws IOException {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(batchSize * 4);
+            this.log = new AccountEngineLog(directory.resolve("partition-" + index + ".log"),
+                    logRecords);
+            this.snapshotPath = directory.resolve("partition-" + index + ".snapshot");
+            this.thread = new Thread(this, "account-engine-" + index);
+        }
+
+        @Override
+        public void run() {
+            while (running || !queue.isEmpty()) {
+                List<Command> batch = new ArrayList<>();
+                try {
+                    Command first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    process(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException | IOException e) {
+                    // The state may now be ahead of the log, so stop taking commands
+                    logger.error("Account engine partition {} failed", index, e);
+                    failed = true;
+                    batch.forEach(command -> command.result.completeExceptionally(
+                            new IllegalStateException("Account engine partition failed", e)));
+                    failQueued();
+                    return;
+                }
+            }
+        }
+
+        private void failQueued() {
+            for (Command command = queue.poll(); command != null; command = queue.poll()) {
+                command.result.completeExceptionally(
+                        new IllegalStateException("Account engine partition failed"));
+            }
+        }
+
+        private void process(List<Command> batch) throws IOException, InterruptedException {
+            if (log.remaining() < batch.size()) {
+                checkpoint();
+            }
+            List<Command> applied = new ArrayList<>();
+            List<AccountEngineRecord> records = new ArrayList<>();
+            for (Command command : batch) {
+                try {
+                    AccountEngineRecord record = apply(command);
+                    log.append(record);
+                    applied.add(command);
+                    records.add(record);
+                } catch (ValidationException | DataAccessException e) {
+                    // Thrown before apply changes any state, so only this command fails
+                    command.result.completeExceptionally(e);
+                }
+            }
+            log.force();
+            durableSeq = seq;
+            batchSizes.record(batch.size());
+            projection.addAll(records);
+            for (int i = 0; i < applied.size(); i++) {
+                applied.get(i).result.complete(toTransactionDTO(records.get(i)));
+            }
+        }
+
+        // Same rules as MainService.deductAmount, checked against the in-memory state
+        private AccountEngineRecord apply(Command command) {
+            AccountState state = accounts.get(command.userId);
+            if (state == null) {
+                state = load(command.userId);
+                accounts.put(command.userId, state);
+            }
+            LocalDate today = LocalDate.now();
+            long dailyTotal = today.equals(state.dailyDate) ? state.dailyTotal : 0;
+            if (command.type == TransactionType.DEDUCTION) {
+                if (state.balance - minBalance < command.amount) {
+                    throw BalanceStrategy.insufficientBalance();
+                }
+                if (dailyTotal + command.amount > maxWithdrawal) {
+                    throw new ValidationException(
+                            "Total daily deductions must be less than " + maxWithdrawal);
+                }
+                dailyTotal += command.amount;
+            }
+            // May refill its block from the database, so it is taken before the state changes
+            String trackingNumber = idGenerator.nextTrackingNumber();
+            state.balance += command.type == TransactionType.DEDUCTION ? -command.amount
+                    : command.amount;
+            state.dailyDate = today;
+            state.dailyTotal = dailyTotal;
+            return new AccountEngineRecord(++seq, command.type, command.userId, command.amount,
+                    state.balance, dailyTotal, today, trackingNumber);
+        }
+
+        private AccountState load(Long userId) {
+            AccountBalanceView account = accountRepository.findBalanceByUserId(userId)
+                    .orElseThrow(BalanceStrategy::accountNotFound);
+            LocalDate today = LocalDate.now();
+            long dailyTotal = dailyDeductionRepository
+                    .findByUserIdAndDeductionDate(userId, today).map(DailyDeduction::getTotal)
+                    .orElse(0L);
+            return new AccountState(account.getBalance(), today, dailyTotal);
+        }
+
+        private void recover() throws IOException {
+            if (Files.exists(snapshotPath)) {
+                try (InputStream file = Files.newInputStream(snapshotPath);
+                        DataInputStream in = new DataInputStream(file)) {
+                    seq = in.readLong();
+                    for (int count = in.readInt(); count > 0; count--) {
+                        long userId = in.readLong();
+                        accounts.put(userId, new AccountState(in.readLong(),
+                                LocalDate.ofEpochDay(in.readLong()), in.readLong()));
+                    }
+                }
+            }
+            List<AccountEngineRecord> records = log.recover(seq);
+            for (AccountEngineRecord record : records) {
+                accounts.put(record.userId,
+                        new AccountState(record.balance, record.date, record.dailyTotal));
+                seq = record.seq;
+            }
+            projectedSeq = seq - records.size();
+            durableSeq = seq;
+            projection.addAll(records);
+            if (!records.isEmpty()) {
+                logger.info("Account engine partition {} replayed {} logged commands", index,
+                        records.size());
+            }
+        }
+
+        // Snapshots the state once everything logged is in the database, then starts the log over
+        private void checkpoint() throws IOException, InterruptedException {
+            while (projectedSeq < durableSeq) {
+                Thread.sleep(1);
+            }
+            Path temporary = directory.resolve("partition-" + index + ".snapshot.tmp");
+            try (OutputStream file = Files.newOutputStream(temporary);
+                    DataOutputStream out = new DataOutputStream(file)) {
+                out.writeLong(seq);
+                out.writeInt(accounts.size());
+                for (Map.Entry<Long, AccountState> entry : accounts.entrySet()) {
+                    out.writeLong(entry.getKey());
+                    out.writeLong(entry.getValue().balance);
+                    out.writeLong(entry.getValue().dailyDate.toEpochDay());
+                    out.writeLong(entry.getValue().dailyTotal);
+                }
+                out.flush();
+                file.flush();
+            }
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            log.reset();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.imansdev.ackownt.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Memory-mapped write-ahead log of one engine partition: fixed-size records written from the
+// start of the file, forced once per batch. After a checkpoint the log starts over at the
+// beginning; stale records left behind are recognized by their sequence numbers not following on.
+// Only the partition's writer thread may use it.
+final class AccountEngineLog implements Closeable {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private int count;
+    private int forced;
+
+    AccountEngineLog(Path path, int capacity) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                (long) capacity * AccountEngineRecord.BYTES);
+        this.capacity = capacity;
+    }
+
+    // Reads the unbroken run of records that follows the snapshot and appends after it
+    List<AccountEngineRecord> recover(long snapshotSeq) {
+        List<AccountEngineRecord> records = new ArrayList<>();
+        for (int i = 0; i < capacity; i++) {
+            AccountEngineRecord record =
+                    AccountEngineRecord.read(buffer, i * AccountEngineRecord.BYTES);
+            if (record == null || (!records.isEmpty()
+                    && record.seq != records.get(records.size() - 1).seq + 1)) {
+                break;
+            }
+            records.add(record);
+        }
+        // A run that does not start right after the snapshot was left over from before it
+        if (!records.isEmpty() && records.get(0).seq != snapshotSeq + 1) {
+            records.clear();
+        }
+        count = records.size();
+        forced = count;
+        return records;
+    }
+
+    int remaining() {
+        return capacity - count;
+    }
+
+    void append(AccountEngineRecord record) {
+        record.write(buffer, count * AccountEngineRecord.BYTES);
+        count++;
+    }
+
+    // One force covers every record appended since the last one
+    void force() {
+        if (count > forced) {
+            buffer.force(forced * AccountEngineRecord.BYTES,
+                    (count - forced) * AccountEngineRecord.BYTES);
+            forced = count;
+        }
+    }
+
+    void reset() {
+        count = 0;
+        forced = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
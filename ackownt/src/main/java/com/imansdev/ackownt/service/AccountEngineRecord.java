@@ -0,0 +1,80 @@
+package com.imansdev.ackownt.service;
+
+import com.imansdev.ackownt.enums.TransactionType;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.zip.CRC32;
+
+// One applied command as stored in the account engine's write-ahead log. Balances and daily totals
+// are stored as the values after the command, so replaying or projecting a record twice is harmless.
+final class AccountEngineRecord {
+
+    static final int BYTES = 65;
+    private static final int TRACKING_NUMBER_BYTES = 12;
+    private static final int PAYLOAD_BYTES = BYTES - Integer.BYTES;
+
+    final long seq;
+    final TransactionType type;
+    final long userId;
+    final long amount;
+    final long balance;
+    final long dailyTotal;
+    final LocalDate date;
+    final String trackingNumber;
+
+    AccountEngineRecord(long seq, TransactionType type, long userId, long amount, long balance,
+            long dailyTotal, LocalDate date, String trackingNumber) {
+        this.seq = seq;
+        this.type = type;
+        this.userId = userId;
+        this.amount = amount;
+        this.balance = balance;
+        this.dailyTotal = dailyTotal;
+        this.date = date;
+        this.trackingNumber = trackingNumber;
+    }
+
+    void write(ByteBuffer buffer, int offset) {
+        buffer.putLong(offset, seq);
+        buffer.put(offset + 8, (byte) (type == TransactionType.CHARGE ? 1 : 2));
+        buffer.putLong(offset + 9, userId);
+        buffer.putLong(offset + 17, amount);
+        buffer.putLong(offset + 25, balance);
+        buffer.putLong(offset + 33, dailyTotal);
+        buffer.putLong(offset + 41, date.toEpochDay());
+        byte[] tracking = trackingNumber.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < TRACKING_NUMBER_BYTES; i++) {
+            buffer.put(offset + 49 + i, tracking[i]);
+        }
+        buffer.putInt(offset + PAYLOAD_BYTES, checksum(buffer, offset));
+    }
+
+    // Returns null for a slot that was never written or was torn by a crash
+    static AccountEngineRecord read(ByteBuffer buffer, int offset) {
+        if (buffer.getInt(offset + PAYLOAD_BYTES) != checksum(buffer, offset)) {
+            return null;
+        }
+        byte kind = buffer.get(offset + 8);
+        if (kind != 1 && kind != 2) {
+            return null;
+        }
+        byte[] tracking = new byte[TRACKING_NUMBER_BYTES];
+        for (int i = 0; i < TRACKING_NUMBER_BYTES; i++) {
+            tracking[i] = buffer.get(offset + 49 + i);
+        }
+        return new AccountEngineRecord(buffer.getLong(offset),
+                kind == 1 ? TransactionType.CHARGE : TransactionType.DEDUCTION,
+                buffer.getLong(offset + 9), buffer.getLong(offset + 17),
+                buffer.getLong(offset + 25), buffer.getLong(offset + 33),
+                LocalDate.ofEpochDay(buffer.getLong(offset + 41)),
+                new String(tracking, StandardCharsets.US_ASCII));
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset, PAYLOAD_BYTES));
+        // A zeroed slot must not pass as a valid record
+        return (int) crc.getValue() ^ 0x5EED;
+    }
+}
@@ -0,0 +1,75 @@
+package com.imansdev.ackownt.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Account ids by user id. Only the id is cached: a user's account never changes hands, while its
+ * balance is changed by native updates and has to be read from the database. Entries go when the
+ * user is deleted, and are bounded like the entity cache by {@code entityCache.maxEntries} and
+ * {@code entityCache.ttlSeconds}; hits, misses and evictions are the {@code cache.*} metrics
+ * tagged {@code cache=accountIds}. Like {@link com.imansdev.ackownt.auth.PrincipalCache}, misses
+ * are loaded outside the cache so the query does not run under a map bin's monitor.
+ */
+@Component
+public class AccountIdCache {
+
+    private final Cache<Long, Long> accountIds;
+    // Moved by every invalidation, so a load that overlapped one does not keep its result
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public AccountIdCache(MeterRegistry meterRegistry,
+            @Value("${entityCache.ttlSeconds}") long ttlSeconds,
+            @Value("${entityCache.maxEntries}") long maxEntries) {
+        this.accountIds = Caffeine.newBuilder().expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .maximumSize(maxEntries).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, accountIds, "accountIds");
+    }
+
+    // Loads on a miss; a user without an account is not cached, so a new account is seen at once
+    public Optional<Long> get(Long userId, Function<Long, Optional<Long>> loader) {
+        Long accountId = accountIds.getIfPresent(userId);
+        if (accountId != null) {
+            return Optional.of(accountId);
+        }
+        long seen = invalidations.get();
+        Optional<Long> loaded = loader.apply(userId);
+        loaded.ifPresent(id -> {
+            accountIds.put(userId, id);
+            if (invalidations.get() != seen) {
+                accountIds.invalidate(userId);
+            }
+        });
+        return loaded;
+    }
+
+    // Invalidated after the commit, so a request racing the deletion cannot cache the id again
+    public void invalidate(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            invalidateNow(userId);
+                        }
+                    });
+        } else {
+            invalidateNow(userId);
+        }
+    }
+
+    private void invalidateNow(Long userId) {
+        invalidations.incrementAndGet();
+        accountIds.invalidate(userId);
+    }
+}
@@ -0,0 +1,215 @@
+package com.imansdev.ackownt.service;
+
+import com.imansdev.ackownt.model.Account;
+import com.imansdev.ackownt.model.AccountStripe;
+import com.imansdev.ackownt.repository.AccountRepository;
+import com.imansdev.ackownt.repository.AccountStripeRepository;
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Sub-balance striping for hot accounts, enabled with {@code account.striping.enabled} for the
+ * account numbers listed in {@code account.striping.accounts}. A striped account's credits are
+ * added to one of {@code account.striping.stripes} stripe rows picked at random instead of to the
+ * account row, so concurrent charges rarely wait on each other. Its balance is the balance column
+ * plus all stripes.
+ *
+ * <p>Deductions lock the account row as usual and check the column plus the committed stripes.
+ * Credits only ever add to a stripe, so a credit that has not committed yet can only make that
+ * check stricter. Stripes are merged into the column lazily, when a deduction would take the
+ * column below the minimum balance. Stripes no credit is writing to at the moment are taken first;
+ * the column itself may never go below the minimum, so only when those do not cover the deduction
+ * does it wait for the credits on the others.
+ *
+ * <p>On startup stripes are created for the listed accounts, and stripes of accounts that are no
+ * longer listed are merged back into their balance column.
+ */
+@Component
+@ConditionalOnProperty(name = "account.striping.enabled", havingValue = "true")
+@DependsOn("entityManagerFactory")
+public class AccountStripes {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountStripes.class);
+
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private AccountStripeRepository accountStripeRepository;
+
+    @Value("${account.striping.accounts:}")
+    private Set<String> accountNumbers;
+    @Value("${account.balanceStrategy:conditional}")
+    private String balanceStrategy;
+    @Value("${account.engine:jpa}")
+    private String engine;
+
+    private final TransactionTemplate transactionTemplate;
+    private final int stripes;
+    private volatile Map<Long, Long> accountIdsByUserId = Map.of();
+
+    public AccountStripes(PlatformTransactionManager transactionManager,
+            @Value("${account.striping.stripes}") int stripes) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.stripes = stripes;
+    }
+
+    @PostConstruct
+    void start() {
+        if ("ledger".equals(balanceStrategy) || "memory".equals(engine)) {
+            throw new IllegalStateException("Account striping cannot be combined with the ledger "
+                    + "strategy or the in-memory account engine");
+        }
+        accountIdsByUserId = transactionTemplate.execute(status -> reconcile());
+        logger.info("Striping {} accounts over {} stripes", accountIdsByUserId.size(), stripes);
+    }
+
+    public boolean isStriped(Long userId) {
+        return accountIdsByUserId.containsKey(userId);
+    }
+
+    // Adds the amount to a random stripe and returns the account's balance as this
+    // transaction sees it
+    @Transactional
+    public long credit(Long userId, long amount) {
+        long accountId = accountIdsByUserId.get(userId);
+        if (accountStripeRepository.credit(accountId,
+                ThreadLocalRandom.current().nextInt(stripes), amount) == 0) {
+            throw BalanceStrategy.accountNotFound();
+        }
+        return accountStripeRepository.findTotal(accountId)
+                .orElseThrow(BalanceStrategy::accountNotFound);
+    }
+
+    @Transactional
+    public long debit(Long userId, long amount, long minBalance) {
+        long accountId = accountIdsByUserId.get(userId);
+        long balance = accountRepository.lockBalanceById(accountId)
+                .orElseThrow(BalanceStrategy::accountNotFound);
+        long striped = accountStripeRepository.sumByAccountId(accountId);
+        if (balance + striped - minBalance < amount) {
+            throw BalanceStrategy.insufficientBalance();
+        }
+        long merged = mergeFor(accountId, balance, amount, minBalance);
+        accountRepository.addToBalance(accountId, merged - amount);
+        return balance + striped - amount;
+    }
+
+    // Clears as many stripes as the balance column needs to cover the amount without going below
+    // the minimum and returns what they held, which the caller adds to the column. The caller
+    // holds the account row lock.
+    public long mergeFor(long accountId, long balance, long amount, long minBalance) {
+        long merged = 0;
+        if (balance - amount < minBalance) {
+            merged = merge(accountStripeRepository.lockIdle(accountId));
+        }
+        if (balance + merged - amount < minBalance) {
+            merged += merge(accountStripeRepository.lockAll(accountId));
+        }
+        return merged;
+    }
+
+    // Clears the locked stripes and returns what they held
+    private long merge(List<Object[]> rows) {
+        long merged = 0;
+        List<Long> ids = new ArrayList<>();
+        for (Object[] row : rows) {
+            ids.add(((Number) row[0]).longValue());
+            merged += ((Number) row[1]).longValue();
+        }
+        if (!ids.isEmpty()) {
+            accountStripeRepository.clear(ids);
+        }
+        return merged;
+    }
+
+    // The stored balance column plus the account's stripes
+    public long balance(Account account) {
+        if (!isStriped(account.getUser().getId())) {
+            return account.getBalance();
+        }
+        return account.getBalance() + accountStripeRepository.sumByAccountId(account.getId());
+    }
+
+    // Sum of the stripes of each striped account among the given ones
+    public Map<Long, Long> stripeTotals(Collection<Long> accountIds) {
+        Map<Long, Long> totals = new HashMap<>();
+        if (!accountIds.isEmpty()) {
+            for (Object[] row : accountStripeRepository.sumByAccountIds(accountIds)) {
+                totals.put(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+            }
+        }
+        return totals;
+    }
+
+    // Drops the stripes of a deleted user's account, and the account once the deletion commits
+    public void removed(Long userId) {
+        Long accountId = accountIdsByUserId.get(userId);
+        if (accountId == null) {
+            return;
+        }
+        accountStripeRepository.deleteByAccountId(accountId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                forget(userId);
+            }
+        });
+    }
+
+    private synchronized void forget(Long userId) {
+        Map<Long, Long> remaining = new HashMap<>(accountIdsByUserId);
+        remaining.remove(userId);
+        accountIdsByUserId = Map.copyOf(remaining);
+    }
+
+    private Map<Long, Long> reconcile() {
+        Map<Long, Long> accountIds = new HashMap<>();
+        for (String accountNumber : accountNumbers) {
+            Optional<Account> account = accountRepository.findByAccountNumber(accountNumber);
+            if (account.isEmpty()) {
+                logger.warn("Striped account {} not found", accountNumber);
+                continue;
+            }
+            accountIds.put(account.get().getUser().getId(), account.get().getId());
+        }
+
+        Set<List<Long>> existing = new HashSet<>();
+        for (AccountStripe stripe : accountStripeRepository.findAll()) {
+            if (accountIds.containsValue(stripe.getAccountId()) && stripe.getStripe() < stripes) {
+                existing.add(List.of(stripe.getAccountId(), (long) stripe.getStripe()));
+                continue;
+            }
+            // The account is no longer striped, or has fewer stripes than before
+            accountRepository.addToBalance(stripe.getAccountId(), stripe.getAmount());
+            accountStripeRepository.delete(stripe);
+        }
+        for (Long accountId : accountIds.values()) {
+            for (int stripe = 0; stripe < stripes; stripe++) {
+                if (!existing.contains(List.of(accountId, (long) stripe))) {
+                    accountStripeRepository.save(new AccountStripe(accountId, stripe));
+                }
+            }
+        }
+        return Map.copyOf(accountIds);
+    }
+}
@@ -0,0 +1,34 @@
+package com.imansdev.ackownt.service;
+
+import com.imansdev.ackownt.model.Account;
+import jakarta.validation.ValidationException;
+
+/**
+ * Applies balance mutations to a user's account. The active implementation is selected with the
+ * {@code account.balanceStrategy} property and always runs inside the caller's transaction.
+ */
+public interface BalanceStrategy {
+
+    // Adds the amount to the account and returns the new balance. The reference is the tracking
+    // number of the transaction recording the change, for strategies that keep their own entries
+    long credit(Long userId, long amount, String reference);
+
+    // Removes the amount while keeping at least minBalance and returns the new balance
+    long debit(Long userId, long amount, long minBalance, String reference);
+
+    // Called once a new account has been saved with its opening balance
+    default void opened(Account account) {}
+
+    // Current balance of the account for display
+    default long balance(Account account) {
+        return account.getBalance();
+    }
+
+    static ValidationException accountNotFound() {
+        return new ValidationException("User's account not found");
+    }
+
+    static ValidationException insufficientBalance() {
+        return new ValidationException("Insufficient balance for this deduction");
+    }
+}
@@ -0,0 +1,68 @@
+package com.imansdev.ackownt.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Thread-safe bloom filter over strings. About ten bits per expected value keeps false positives
+// near 1% with seven hashes; the bit positions come from one hash and a second, odd step derived
+// from it. A filter cannot forget, so callers that drop values build a new one.
+public final class BloomFilter {
+
+    private static final int HASHES = 7;
+
+    private final AtomicLongArray bits;
+    private final long mask;
+
+    public BloomFilter(int expectedValues) {
+        int size = Math.max(64, expectedValues * 10);
+        this.bits = new AtomicLongArray(Integer.highestOneBit(size - 1) * 2 / 64);
+        this.mask = (long) bits.length() * 64 - 1;
+    }
+
+    public void add(String value) {
+        if (value != null) {
+            add(value, 0, value.length());
+        }
+    }
+
+    // Adds the characters from the start index up to the end index
+    public void add(String value, int start, int end) {
+        long hash = hash(value, start, end);
+        long step = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = (hash + i * step) & mask;
+            bits.accumulateAndGet((int) (bit >>> 6), 1L << bit, (word, flag) -> word | flag);
+        }
+    }
+
+    // A null value is never stored, so it cannot collide
+    public boolean mightContain(String value) {
+        return value != null && mightContain(value, 0, value.length());
+    }
+
+    // Checks the characters from the start index up to the end index, without copying them
+    public boolean mightContain(String value, int start, int end) {
+        long hash = hash(value, start, end);
+        long step = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = (hash + i * step) & mask;
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hash(String value, int start, int end) {
+        long hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = hash * 31 + value.charAt(i);
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB93FE53A4CCDL;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -0,0 +1,33 @@
+package com.imansdev.ackownt.service;
+
+import com.imansdev.ackownt.repository.AccountRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+// Balance checks are pushed into a single conditional UPDATE, so there is no read before the write
+@Component
+@ConditionalOnProperty(name = "account.balanceStrategy", havingValue = "conditional",
+        matchIfMissing = true)
+public class ConditionalUpdateBalanceStrategy implements BalanceStrategy {
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Override
+    @Transactional
+    public long credit(Long userId, long amount, String reference) {
+        return accountRepository.creditAndGetBalance(userId, amount)
+                .orElseThrow(BalanceStrategy::accountNotFound);
+    }
+
+    @Override
+    @Transactional
+    public long debit(Long userId, long amount, long minBalance, String reference) {
+        return accountRepository.debitAndGetBalance(userId, amount, minBalance)
+                .orElseThrow(() -> accountRepository.existsByUserId(userId)
+                        ? BalanceStrategy.insufficientBalance()
+                        : BalanceStrategy.accountNotFound());
+    }
+}
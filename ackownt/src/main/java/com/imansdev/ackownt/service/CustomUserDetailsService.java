@@ -3,24 +3,46 @@ package com.imansdev.ackownt.service;
 import com.imansdev.ackownt.model.Customer;
 import com.imansdev.ackownt.repository.CustomerRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
+    // Authority required by the bulk settlement endpoint
+    public static final String SETTLEMENT_AUTHORITY = "SETTLEMENT";
+    // Authority required by the bulk customer import endpoints
+    public static final String IMPORT_AUTHORITY = "IMPORT";
+
     @Autowired
     private CustomerRepository customerRepository;
 
+    @Value("${settlement.operators:}")
+    private Set<String> settlementOperators;
+
+    @Value("${customerImport.operators:}")
+    private Set<String> importOperators;
+
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
         Customer user = customerRepository.findByEmail(email).orElseThrow(
                 () -> new UsernameNotFoundException("User not found with email: " + email));
 
-        return new User(user.getEmail(), user.getPassword(), new ArrayList<>());
+        List<SimpleGrantedAuthority> authorities = new ArrayList<>();
+        if (settlementOperators.contains(user.getEmail())) {
+            authorities.add(new SimpleGrantedAuthority(SETTLEMENT_AUTHORITY));
+        }
+        if (importOperators.contains(user.getEmail())) {
+            authorities.add(new SimpleGrantedAuthority(IMPORT_AUTHORITY));
+        }
+        return new User(user.getEmail(), user.getPassword(), authorities);
     }
 }
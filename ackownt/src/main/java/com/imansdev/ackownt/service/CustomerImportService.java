@@ -0,0 +1,436 @@
+package com.imansdev.ackownt.service;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.imansdev.ackownt.auth.BoundedBCryptPasswordEncoder;
+import com.imansdev.ackownt.dto.CustomerImportRejectionDTO;
+import com.imansdev.ackownt.dto.CustomerImportReportDTO;
+import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.model.CustomerImport;
+import com.imansdev.ackownt.model.CustomerImportRejection;
+import com.imansdev.ackownt.repository.CustomerImportRejectionRepository;
+import com.imansdev.ackownt.repository.CustomerImportRepository;
+import com.imansdev.ackownt.repository.CustomerRepository;
+import com.imansdev.ackownt.repository.CustomerUniqueKeys;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ValidationException;
+import jakarta.validation.Validator;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Registers customers in bulk from a CSV file with a header row or from NDJSON, one customer per
+ * line, under the same rules as {@link MainService#createUser}. The upload is read as a stream in
+ * batches of {@code customerImport.batchSize} lines. Each batch is parsed and validated against
+ * the {@link Customer} constraints on {@code customerImport.threads} threads, checked for taken
+ * values with one query (skipped when the {@link UniqueKeyFilter} has seen none of them), hashed
+ * on a BCrypt pool of the same size, and written in one transaction whose inserts Hibernate sends
+ * as JDBC batches.
+ *
+ * <p>That transaction also stores the batch's rejected lines and moves the import's checkpoint, so
+ * uploading the same file again under the same import id resumes after the last batch that
+ * committed. A completed import answers with its report without reading the upload. Imported
+ * customers bypass the second-level cache, so an import does not evict the customers in use.
+ */
+@Service
+public class CustomerImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CustomerImportService.class);
+    // Columns a CSV header must name, in any order
+    static final List<String> CSV_COLUMNS = List.of("name", "surname", "nationalId",
+            "dateOfBirth", "gender", "email", "phoneNumber", "militaryStatus", "password");
+
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private CustomerImportRepository customerImportRepository;
+    @Autowired
+    private CustomerImportRejectionRepository customerImportRejectionRepository;
+    @Autowired
+    private UniqueKeyFilter uniqueKeyFilter;
+    @Autowired
+    private Validator validator;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private BCryptPasswordEncoder passwordEncoder;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${customerImport.batchSize}")
+    private int batchSize;
+    @Value("${customerImport.threads}")
+    private int threads;
+    @Value("${customerImport.strength}")
+    private int strength;
+
+    private ExecutorService workers;
+    private BoundedBCryptPasswordEncoder importEncoder;
+
+    public CustomerImportService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    void start() {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger created = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "customer-import-" + created.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        int hashStrength = strength > 0 ? strength
+                : ((BoundedBCryptPasswordEncoder) passwordEncoder).getStrength();
+        // A pool of its own, so imports never take the hashing capacity logins need; only the
+        // workers submit to it, so its queue cannot overflow
+        importEncoder = new BoundedBCryptPasswordEncoder(hashStrength, poolSize, poolSize,
+                meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() {
+        workers.shutdownNow();
+        importEncoder.destroy();
+    }
+
+    public CustomerImportReportDTO importCustomers(String importId, boolean csv,
+            InputStream input) throws IOException {
+        if (importId == null || importId.isBlank() || importId.length() > 64) {
+            throw new ValidationException("Import id must be between 1 and 64 characters");
+        }
+        CustomerImport checkpoint = openCheckpoint(importId);
+        if (checkpoint.isCompleted()) {
+            return toReport(checkpoint);
+        }
+
+        BufferedReader reader =
+                new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        long lineNumber = 0;
+        List<String> columns = null;
+        if (csv) {
+            String header = reader.readLine();
+            lineNumber++;
+            columns = header == null ? List.of() : parseCsvLine(header);
+            if (!columns.containsAll(CSV_COLUMNS)) {
+                throw new ValidationException(
+                        "The CSV header must name the columns " + String.join(",", CSV_COLUMNS));
+            }
+        }
+        // Lines a previous upload of this import already processed
+        while (lineNumber < checkpoint.getLinesDone() && reader.readLine() != null) {
+            lineNumber++;
+        }
+        if (lineNumber < checkpoint.getLinesDone()) {
+            throw new ValidationException("The upload has fewer lines than import " + importId
+                    + " has already processed");
+        }
+
+        List<Row> batch = new ArrayList<>(batchSize);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            batch.add(new Row(lineNumber, line));
+            if (batch.size() == batchSize) {
+                checkpoint = importBatch(checkpoint, columns, batch, lineNumber, false);
+                batch.clear();
+            }
+        }
+        checkpoint = importBatch(checkpoint, columns, batch, lineNumber, true);
+        logger.info("Import {} completed: {} customers imported, {} lines rejected", importId,
+                checkpoint.getImported(), checkpoint.getRejected());
+        return toReport(checkpoint);
+    }
+
+    public CustomerImportReportDTO getReport(String importId) {
+        return customerImportRepository.findById(importId).map(CustomerImportService::toReport)
+                .orElseThrow(() -> new ValidationException("Import not found: " + importId));
+    }
+
+    // The import's rejected lines as NDJSON, in line order
+    @Transactional(readOnly = true)
+    public void exportRejections(String importId, OutputStream outputStream) throws IOException {
+        if (!customerImportRepository.existsById(importId)) {
+            throw new ValidationException("Import not found: " + importId);
+        }
+        ObjectWriter writer = objectMapper.writerFor(CustomerImportRejectionDTO.class);
+        OutputStream out = new BufferedOutputStream(outputStream, 16 * 1024);
+
+        try (Stream<CustomerImportRejection> rejections =
+                customerImportRejectionRepository.streamByImportId(importId)) {
+            Iterator<CustomerImportRejection> iterator = rejections.iterator();
+            while (iterator.hasNext()) {
+                CustomerImportRejection rejection = iterator.next();
+                out.write(writer.writeValueAsBytes(
+                        new CustomerImportRejectionDTO(rejection.getLine(), rejection.getError())));
+                out.write('\n');
+                entityManager.detach(rejection);
+            }
+        }
+        out.flush();
+    }
+
+    private CustomerImport openCheckpoint(String importId) {
+        try {
+            return transactionTemplate.execute(status -> customerImportRepository
+                    .findById(importId)
+                    .orElseGet(() -> customerImportRepository.save(new CustomerImport(importId))));
+        } catch (DataIntegrityViolationException e) {
+            // Created by a concurrent upload of the same import
+            return customerImportRepository.findById(importId).orElseThrow(() -> e);
+        }
+    }
+
+    private CustomerImport importBatch(CustomerImport checkpoint, List<String> columns,
+            List<Row> rows, long linesDone, boolean completed) {
+        await(rows.stream().map(row -> CompletableFuture.runAsync(() -> parse(row, columns),
+                workers)));
+        rejectTaken(rows, false);
+        await(rows.stream().filter(Row::isValid).map(row -> CompletableFuture.runAsync(
+                () -> row.passwordHash = importEncoder.encode(row.customer.getPassword()),
+                workers)));
+
+        CustomerImport written;
+        try {
+            written = write(checkpoint, rows, linesDone, completed);
+        } catch (DataIntegrityViolationException e) {
+            // A value registered while the batch was prepared. The failed transaction left ids on
+            // the entities, so they are parsed again.
+            rows.stream().filter(Row::isValid).forEach(row -> parse(row, columns));
+            rejectTaken(rows, true);
+            written = write(checkpoint, rows, linesDone, completed);
+        }
+        rows.stream().filter(Row::isValid).forEach(row -> uniqueKeyFilter.add(
+                row.customer.getEmail(), row.customer.getPhoneNumber(),
+                row.customer.getNationalId()));
+        return written;
+    }
+
+    private CustomerImport write(CustomerImport checkpoint, List<Row> rows, long linesDone,
+            boolean completed) {
+        return transactionTemplate.execute(status -> {
+            CustomerImport current = customerImportRepository.lockById(checkpoint.getId())
+                    .orElseThrow(() -> new ValidationException(
+                            "Import not found: " + checkpoint.getId()));
+            if (current.getLinesDone() != checkpoint.getLinesDone() || current.isCompleted()) {
+                throw new ValidationException(
+                        "Import " + checkpoint.getId() + " is being uploaded by another request");
+            }
+            entityManager.unwrap(Session.class).setCacheMode(CacheMode.IGNORE);
+            int imported = 0;
+            for (Row row : rows) {
+                if (row.isValid()) {
+                    row.customer.setPassword(row.passwordHash);
+                    entityManager.persist(row.customer);
+                    imported++;
+                } else {
+                    entityManager.persist(
+                            new CustomerImportRejection(current.getId(), row.line, row.error));
+                }
+            }
+            current.advance(linesDone, imported, rows.size() - imported, completed);
+            return current;
+        });
+    }
+
+    private void parse(Row row, List<String> columns) {
+        Customer customer;
+        try {
+            if (columns == null) {
+                customer = objectMapper.readValue(row.text, Customer.class);
+            } else {
+                List<String> values = parseCsvLine(row.text);
+                if (values.size() != columns.size()) {
+                    row.reject("Expected " + columns.size() + " columns but found "
+                            + values.size());
+                    return;
+                }
+                Map<String, String> fields = new HashMap<>();
+                for (int i = 0; i < columns.size(); i++) {
+                    if (CSV_COLUMNS.contains(columns.get(i)) && !values.get(i).isEmpty()) {
+                        fields.put(columns.get(i), values.get(i));
+                    }
+                }
+                customer = objectMapper.convertValue(fields, Customer.class);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            row.reject(describe(e));
+            return;
+        }
+        Set<ConstraintViolation<Customer>> violations = validator.validate(customer);
+        if (!violations.isEmpty()) {
+            row.reject(violations.stream().map(ConstraintViolation::getMessage).sorted()
+                    .collect(Collectors.joining(", ")));
+            return;
+        }
+        row.customer = customer;
+        row.error = null;
+    }
+
+    // Values taken by an earlier line of the batch or by a registered customer, reported like
+    // MainService reports them
+    private void rejectTaken(List<Row> rows, boolean checkDatabase) {
+        Set<String> emails = new HashSet<>();
+        Set<String> phoneNumbers = new HashSet<>();
+        Set<String> nationalIds = new HashSet<>();
+        for (Row row : rows) {
+            if (!row.isValid()) {
+                continue;
+            }
+            Customer customer = row.customer;
+            checkDatabase |= uniqueKeyFilter.mightExist(customer.getEmail(),
+                    customer.getPhoneNumber(), customer.getNationalId());
+            if (!emails.add(customer.getEmail())) {
+                row.reject("Email must be unique");
+            } else if (!phoneNumbers.add(customer.getPhoneNumber())) {
+                row.reject("Phone number must be unique");
+            } else if (!nationalIds.add(customer.getNationalId())) {
+                row.reject("National ID must be unique");
+            }
+        }
+        if (!checkDatabase || emails.isEmpty()) {
+            return;
+        }
+
+        List<CustomerUniqueKeys> taken = customerRepository
+                .findByEmailInOrPhoneNumberInOrNationalIdIn(emails, phoneNumbers, nationalIds);
+        Set<String> takenEmails = taken.stream().map(CustomerUniqueKeys::getEmail)
+                .collect(Collectors.toSet());
+        Set<String> takenPhoneNumbers = taken.stream().map(CustomerUniqueKeys::getPhoneNumber)
+                .collect(Collectors.toSet());
+        Set<String> takenNationalIds = taken.stream().map(CustomerUniqueKeys::getNationalId)
+                .collect(Collectors.toSet());
+        for (Row row : rows) {
+            if (!row.isValid()) {
+                continue;
+            }
+            if (takenEmails.contains(row.customer.getEmail())) {
+                row.reject("Email must be unique");
+            } else if (takenPhoneNumbers.contains(row.customer.getPhoneNumber())) {
+                row.reject("Phone number must be unique");
+            } else if (takenNationalIds.contains(row.customer.getNationalId())) {
+                row.reject("National ID must be unique");
+            }
+        }
+    }
+
+    private static void await(Stream<CompletableFuture<Void>> tasks) {
+        try {
+            CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Names the field a value could not be read into, without Jackson's internals
+    private static String describe(Exception e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof JsonMappingException mapping && !mapping.getPath().isEmpty()) {
+                return "Invalid value for " + mapping.getPath().get(0).getFieldName();
+            }
+        }
+        return "Malformed line";
+    }
+
+    private static CustomerImportReportDTO toReport(CustomerImport checkpoint) {
+        return new CustomerImportReportDTO(checkpoint.getId(), checkpoint.getLinesDone(),
+                checkpoint.getImported(), checkpoint.getRejected(), checkpoint.isCompleted());
+    }
+
+    // Comma-separated values; a value in double quotes may contain commas and doubled quotes
+    static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString().trim());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString().trim());
+        return values;
+    }
+
+    private static final class Row {
+        private final long line;
+        private final String text;
+        private Customer customer;
+        private String passwordHash;
+        private String error;
+
+        private Row(long line, String text) {
+            this.line = line;
+            this.text = text;
+        }
+
+        private boolean isValid() {
+            return error == null && customer != null;
+        }
+
+        private void reject(String error) {
+            this.error = error;
+        }
+    }
+}
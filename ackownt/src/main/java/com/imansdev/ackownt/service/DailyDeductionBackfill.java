@@ -0,0 +1,35 @@
+package com.imansdev.ackownt.service;
+
+import com.imansdev.ackownt.repository.DailyDeductionRepository;
+import jakarta.annotation.PostConstruct;
+import java.time.LocalDate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Builds today's deduction totals from transactions recorded before they existed. Only the current
+// day's total is ever checked against the limit, so earlier days are left alone. The insert skips
+// users that already have a total, so running it on every start is safe. It runs while the context
+// starts, before the web server accepts requests: a deduction arriving first would create its
+// user's total with only its own amount, and the backfill would then skip that user.
+@Component
+@ConditionalOnProperty(name = "account.dailyDeductionBackfill", havingValue = "true",
+        matchIfMissing = true)
+public class DailyDeductionBackfill {
+
+    private static final Logger logger = LoggerFactory.getLogger(DailyDeductionBackfill.class);
+
+    @Autowired
+    private DailyDeductionRepository dailyDeductionRepository;
+
+    @PostConstruct
+    void backfill() {
+        int created = dailyDeductionRepository.backfillFromTransactions(LocalDate.now());
+        if (created > 0) {
+            logger.info("Backfilled {} of today's deduction totals from transaction history",
+                    created);
+        }
+    }
+}
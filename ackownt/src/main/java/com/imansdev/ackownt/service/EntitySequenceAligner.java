@@ -0,0 +1,47 @@
+package com.imansdev.ackownt.service;
+
+import jakarta.annotation.PostConstruct;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves the entity id sequences past the ids already in their tables. Databases created while ids
+ * came from identity columns hold rows the new sequences know nothing about, and a sequence that
+ * starts at 1 would hand those ids out again. Ids are allocated with the pooled-lo optimizer, so a
+ * sequence value is the first id of its block and restarting at the next free id is enough.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class EntitySequenceAligner {
+
+    private static final Map<String, String> SEQUENCES = Map.of(
+            "customer_seq", "customer",
+            "account_seq", "account",
+            "transaction_seq", "transaction");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public EntitySequenceAligner(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void alignSequences() {
+        SEQUENCES.forEach(this::align);
+    }
+
+    private void align(String sequence, String table) {
+        Long next = jdbcTemplate.queryForObject(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = ?",
+                Long.class, sequence.toUpperCase());
+        Long maxId = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+        if (next != null && maxId != null && next <= maxId) {
+            jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + (maxId + 1));
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.imansdev.ackownt.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Applies concurrently submitted operations in shared database transactions, enabled with
+ * {@code groupCommit.enabled}. A single thread collects operations for up to
+ * {@code groupCommit.windowMicros} after the first one arrives, or until
+ * {@code groupCommit.maxBatch} are waiting, and runs them in one transaction so they share one
+ * commit. Each caller still gets its own result or exception.
+ *
+ * <p>An operation that throws rolls the batch back; it fails alone and the rest of the batch is
+ * applied again without it. The batch's writes are flushed before the commit, and if the flush
+ * fails, which of the operations broke it is unknown, so each is retried in its own transaction.
+ * An exception from the commit itself leaves the outcome unknown: it may come after the database
+ * committed, for instance from an afterCommit callback, so every operation of the batch fails with
+ * it rather than being applied a second time. Operations run in ascending lock order, the order
+ * transfers lock accounts in, so a batch cannot deadlock with them.
+ */
+@Component
+@ConditionalOnProperty(name = "groupCommit.enabled", havingValue = "true")
+public class GroupCommitter {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitter.class);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final DistributionSummary batchSizes;
+    private final BlockingQueue<Operation<?>> queue = new LinkedBlockingQueue<>();
+    private Thread committer;
+    private volatile boolean running = true;
+
+    public GroupCommitter(PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry, @Value("${groupCommit.windowMicros}") long windowMicros,
+            @Value("${groupCommit.maxBatch}") int maxBatch) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatch = maxBatch;
+        this.batchSizes = DistributionSummary.builder("group.commit.batch.size")
+                .description("Operations applied per commit").register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        committer = new Thread(this::run, "group-committer");
+        committer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        committer.join();
+    }
+
+    // Runs the action in the next batch and returns its result, or throws its exception
+    public <T> T submit(long lockOrder, Supplier<T> action) {
+        Operation<T> operation = new Operation<>(lockOrder, action);
+        queue.add(operation);
+        if (!running && queue.remove(operation)) {
+            // The committer may have stopped before it could see this operation
+            operation.result.completeExceptionally(
+                    new IllegalStateException("The group committer has been stopped"));
+        }
+        try {
+            return operation.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            List<Operation<?>> batch = new ArrayList<>();
+            try {
+                Operation<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatch) {
+                    queue.drainTo(batch, maxBatch - batch.size());
+                    long wait = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatch || wait <= 0) {
+                        break;
+                    }
+                    Operation<?> next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            batchSizes.record(batch.size());
+            commit(batch);
+        }
+    }
+
+    private void commit(List<Operation<?>> batch) {
+        // The sort is stable, so operations on one account keep their arrival order
+        List<Operation<?>> pending = new ArrayList<>(batch);
+        pending.sort(Comparator.comparingLong(operation -> operation.lockOrder));
+        while (!pending.isEmpty()) {
+            Operation<?> failed;
+            try {
+                failed = transactionTemplate.execute(status -> {
+                    for (Operation<?> operation : pending) {
+                        if (!operation.apply()) {
+                            status.setRollbackOnly();
+                            return operation;
+                        }
+                    }
+                    flush();
+                    return null;
+                });
+            } catch (FlushFailure e) {
+                // Rolled back, but nothing tells which operation broke the flush
+                logger.warn("Group commit of {} operations failed, committing them one by one",
+                        pending.size(), e.getCause());
+                commitSeparately(pending);
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Group commit of {} operations failed with an unknown outcome",
+                        pending.size(), e);
+                pending.forEach(operation -> operation.fail(e));
+                return;
+            }
+            if (failed == null) {
+                pending.forEach(Operation::complete);
+                return;
+            }
+            failed.complete();
+            pending.remove(failed);
+        }
+    }
+
+    private void commitSeparately(List<Operation<?>> operations) {
+        for (Operation<?> operation : operations) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (!operation.apply()) {
+                        status.setRollbackOnly();
+                    } else {
+                        flush();
+                    }
+                });
+            } catch (FlushFailure e) {
+                operation.error = (RuntimeException) e.getCause();
+            } catch (RuntimeException e) {
+                operation.error = e;
+            }
+            operation.complete();
+        }
+    }
+
+    // Sends the pending writes so constraint violations surface before the commit
+    private void flush() {
+        try {
+            entityManager.flush();
+        } catch (RuntimeException e) {
+            throw new FlushFailure(e);
+        }
+    }
+
+    // Marks an exception thrown before the commit, after which the transaction was rolled back
+    private static final class FlushFailure extends RuntimeException {
+        private FlushFailure(RuntimeException cause) {
+            super(cause);
+        }
+    }
+
+    private static final class Operation<T> {
+        private final long lockOrder;
+        private final Supplier<T> action;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private T value;
+        private RuntimeException error;
+
+        private Operation(long lockOrder, Supplier<T> action) {
+            this.lockOrder = lockOrder;
+            this.action = action;
+        }
+
+        // Runs the action in the current transaction; false when it threw
+        private boolean apply() {
+            try {
+                value = action.get();
+                error = null;
+                return true;
+            } catch (RuntimeException e) {
+                error = e;
+                return false;
+            }
+        }
+
+        private void fail(RuntimeException e) {
+            error = e;
+            complete();
+        }
+
+        private void complete() {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        }
+    }
+}
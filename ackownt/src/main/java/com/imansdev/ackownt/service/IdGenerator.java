@@ -0,0 +1,130 @@
+package com.imansdev.ackownt.service;
+
+import jakarta.annotation.PostConstruct;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands out tracking and account numbers that are unique by construction, so inserts never have
+ * to be retried. Each database sequence reserves a block of {@value #BLOCK_SIZE} values per call;
+ * numbers inside a block are taken with a single atomic increment and only the thread that finds
+ * the block exhausted touches the database. Sequence values are then scrambled with a bijection of
+ * the 12 digit number space so consecutive numbers do not look consecutive.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class IdGenerator {
+
+    static final long BLOCK_SIZE = 1000;
+    static final int DIGITS = 12;
+    private static final long NUMBER_SPACE = 1_000_000_000_000L;
+    // Coprime with 10, so multiplying by it modulo 10^12 is a permutation of the number space
+    private static final long SCRAMBLE = 738_109_461_297L;
+    private static final long HALF = 1_000_000L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockSequence trackingNumbers = new BlockSequence("tracking_number_seq");
+    private final BlockSequence accountNumbers = new BlockSequence("account_number_seq");
+
+    @Autowired
+    public IdGenerator(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Creates the sequences and widens the columns of databases created with the old 6 and 10
+    // digit random numbers; the old values cannot collide with the longer new ones
+    @PostConstruct
+    void prepareSchema() {
+        for (String sequence : new String[] {"tracking_number_seq", "account_number_seq"}) {
+            jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + sequence
+                    + " START WITH 1 INCREMENT BY " + BLOCK_SIZE);
+        }
+        widenColumn("TRANSACTION", "TRACKING_NUMBER");
+        widenColumn("ACCOUNT", "ACCOUNT_NUMBER");
+    }
+
+    public String nextTrackingNumber() {
+        return format(trackingNumbers.next());
+    }
+
+    public String nextAccountNumber() {
+        return format(accountNumbers.next());
+    }
+
+    static String format(long value) {
+        if (value >= NUMBER_SPACE) {
+            throw new IllegalStateException("Identifier space exhausted");
+        }
+        return String.format("%0" + DIGITS + "d", scramble(value));
+    }
+
+    // value * SCRAMBLE mod 10^12, split into 10^6 halves so no intermediate overflows a long
+    private static long scramble(long value) {
+        long high = (value * (SCRAMBLE / HALF)) % NUMBER_SPACE;
+        return (high * HALF + value * (SCRAMBLE % HALF)) % NUMBER_SPACE;
+    }
+
+    private void widenColumn(String table, String column) {
+        Integer length = jdbcTemplate.queryForObject(
+                "SELECT CHARACTER_MAXIMUM_LENGTH FROM INFORMATION_SCHEMA.COLUMNS "
+                        + "WHERE TABLE_NAME = ? AND COLUMN_NAME = ?",
+                Integer.class, table, column);
+        if (length != null && length < DIGITS) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN " + column
+                    + " SET DATA TYPE VARCHAR(" + DIGITS + ")");
+        }
+    }
+
+    long reserveBlock(String sequence) {
+        return jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR " + sequence, Long.class);
+    }
+
+    private final class BlockSequence {
+        private final String sequence;
+        // Not a monitor, so a virtual thread refilling over JDBC does not pin its carrier
+        private final ReentrantLock refillLock = new ReentrantLock();
+        private volatile Block block = new Block(0, 0);
+
+        private BlockSequence(String sequence) {
+            this.sequence = sequence;
+        }
+
+        private long next() {
+            while (true) {
+                Block current = block;
+                long value = current.next.getAndIncrement();
+                if (value < current.end) {
+                    return value;
+                }
+                refill(current);
+            }
+        }
+
+        private void refill(Block exhausted) {
+            refillLock.lock();
+            try {
+                // Another thread may already have replaced the block
+                if (block == exhausted) {
+                    long start = reserveBlock(sequence);
+                    block = new Block(start, start + BLOCK_SIZE);
+                }
+            } finally {
+                refillLock.unlock();
+            }
+        }
+    }
+
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.imansdev.ackownt.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.validation.ValidationException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs a mutation at most once per (user, Idempotency-Key). Completed results are replayed from a
+ * bounded store that evicts keys after {@code idempotency.ttlMinutes}; duplicates that arrive while
+ * the first call is still running wait for it instead of reaching the database. Failed calls are
+ * not stored, so a retry after an error runs again.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final Cache<String, Completed> completed;
+    private final ConcurrentHashMap<String, CompletableFuture<Completed>> inFlight =
+            new ConcurrentHashMap<>();
+
+    public IdempotencyService(@Value("${idempotency.ttlMinutes}") long ttlMinutes,
+            @Value("${idempotency.maxEntries}") long maxEntries) {
+        this.completed = Caffeine.newBuilder().expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .maximumSize(maxEntries).build();
+    }
+
+    // A fingerprint for a request too large to keep as it is: the SHA-256 of its description
+    public static String digest(String description) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(description.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform provides SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // The fingerprint describes the request; reusing a key for a different request is rejected
+    public <T> T execute(String email, String idempotencyKey, String fingerprint,
+            Supplier<T> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new ValidationException(
+                    "Idempotency-Key must not be longer than " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String key = email + ':' + idempotencyKey;
+        Completed previous = completed.getIfPresent(key);
+        if (previous != null) {
+            return replay(previous, fingerprint);
+        }
+
+        CompletableFuture<Completed> running = new CompletableFuture<>();
+        CompletableFuture<Completed> other = inFlight.putIfAbsent(key, running);
+        if (other != null) {
+            return replay(await(other), fingerprint);
+        }
+        try {
+            // The other call may have finished between the lookup and claiming the key
+            previous = completed.getIfPresent(key);
+            if (previous != null) {
+                running.complete(previous);
+                return replay(previous, fingerprint);
+            }
+            T result = action.get();
+            Completed done = new Completed(fingerprint, result);
+            completed.put(key, done);
+            running.complete(done);
+            return result;
+        } catch (RuntimeException e) {
+            running.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, running);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T replay(Completed previous, String fingerprint) {
+        if (!previous.fingerprint.equals(fingerprint)) {
+            throw new ValidationException(
+                    "Idempotency-Key has already been used for a different request");
+        }
+        return (T) previous.result;
+    }
+
+    private Completed await(CompletableFuture<Completed> other) {
+        try {
+            return other.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static final class Completed {
+        private final String fingerprint;
+        private final Object result;
+
+        private Completed(String fingerprint, Object result) {
+            this.fingerprint = fingerprint;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.imansdev.ackownt.service;
+
+import com.imansdev.ackownt.exception.OverloadedException;
+import com.imansdev.ackownt.model.LedgerPosting;
+import com.imansdev.ackownt.repository.LedgerPostingRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Double-entry ledger behind the {@code ledger} balance strategy. Every balance change is an
+ * entry of immutable postings that sum to zero: one on the customer's account and the opposite
+ * one on the clearing account, which stands for money entering or leaving the bank, or one on
+ * each side of a transfer. Entries are referenced by the tracking number of the transaction
+ * recording them, or by the transfer reference both sides of a transfer share. An account's
+ * balance is its latest snapshot plus the postings made since the snapshot was covered, and a
+ * background job rolls postings older than {@code ledger.snapshotLagSeconds} into new snapshots
+ * so that sum stays short. The lag leaves room for transactions that posted before the cutoff but
+ * had not committed yet: a snapshot never looks at a posting again, so a transaction whose
+ * postings are older than half the lag when it is about to commit is rolled back with an
+ * {@link OverloadedException} instead, leaving the other half for the commit itself. Postings
+ * and cutoffs are stamped in UTC: local time runs back on a daylight saving change, which would
+ * stamp new postings before a snapshot's cutoff and keep them out of every balance.
+ *
+ * <p>On startup every account without an opening entry is opened with its current balance
+ * column, which migrates existing data. From then on the column is no longer maintained, so
+ * switching away from ledger mode is not supported.
+ */
+@Component
+@ConditionalOnProperty(name = "account.balanceStrategy", havingValue = "ledger")
+@DependsOn("entityManagerFactory")
+public class Ledger {
+
+    public static final long CLEARING_ACCOUNT_ID = 0L;
+
+    private static final Logger logger = LoggerFactory.getLogger(Ledger.class);
+
+    @Autowired
+    private LedgerPostingRepository ledgerPostingRepository;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+    private final long snapshotIntervalSeconds;
+    private final long snapshotLagSeconds;
+    private final ScheduledExecutorService snapshotter = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, "ledger-snapshotter"));
+
+    public Ledger(PlatformTransactionManager transactionManager,
+            @Value("${ledger.snapshotIntervalSeconds}") long snapshotIntervalSeconds,
+            @Value("${ledger.snapshotLagSeconds}") long snapshotLagSeconds) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+        this.snapshotLagSeconds = snapshotLagSeconds;
+    }
+
+    @PostConstruct
+    void start() {
+        int dropped = dropSnapshotsAfter(now());
+        if (dropped > 0) {
+            logger.warn("Dropped {} ledger snapshots covering postings after the current time",
+                    dropped);
+        }
+        int opened = openExistingAccounts();
+        if (opened > 0) {
+            logger.info("Opened {} existing accounts in the ledger", opened);
+        }
+        snapshotter.scheduleWithFixedDelay(this::snapshot, snapshotIntervalSeconds,
+                snapshotIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        snapshotter.shutdownNow();
+    }
+
+    // Snapshots are only a shortcut over the postings, so dropping one loses nothing. One that
+    // covers time still to come, e.g. cut in local time before postings were stamped in UTC,
+    // would hide the postings made until then.
+    int dropSnapshotsAfter(LocalDateTime now) {
+        Integer dropped = transactionTemplate.execute(
+                status -> ledgerPostingRepository.deleteSnapshotsCoveredAfter(now));
+        return dropped == null ? 0 : dropped;
+    }
+
+    int openExistingAccounts() {
+        Integer opened = transactionTemplate.execute(status -> {
+            int accounts = ledgerPostingRepository.openMissingAccounts(now());
+            ledgerPostingRepository.balanceOpeningEntries(CLEARING_ACCOUNT_ID);
+            return accounts;
+        });
+        return opened == null ? 0 : opened;
+    }
+
+    // Records the opening balance of a newly created account
+    public void open(long accountId, long amount) {
+        post("opening-" + accountId, accountId, amount);
+    }
+
+    // Appends an entry moving the amount between the clearing account and the account; a
+    // negative amount takes money out of the account
+    public void post(String entryReference, long accountId, long amount) {
+        post(entryReference, CLEARING_ACCOUNT_ID, accountId, amount);
+    }
+
+    // Appends an entry moving the amount from one account to the other
+    public void post(String entryReference, long fromAccountId, long toAccountId, long amount) {
+        LedgerPosting posting = new LedgerPosting(entryReference, toAccountId, amount);
+        entityManager.persist(posting);
+        entityManager.persist(new LedgerPosting(entryReference, fromAccountId, -amount));
+        refuseLateCommit(posting.getPostedAt());
+    }
+
+    public long balance(long accountId) {
+        return balances(List.of(accountId)).getOrDefault(accountId, 0L);
+    }
+
+    public Map<Long, Long> balances(Collection<Long> accountIds) {
+        // Pending postings of the current transaction have to be visible to the sum
+        if (entityManager.isJoinedToTransaction()) {
+            entityManager.flush();
+        }
+        Map<Long, Long> balances = new HashMap<>();
+        for (Object[] row : ledgerPostingRepository.findBalances(accountIds)) {
+            balances.put(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+        }
+        return balances;
+    }
+
+    // Checks the oldest posting of the transaction once, right before it commits
+    private void refuseLateCommit(LocalDateTime postedAt) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, postedAt);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                Duration age = Duration.between(postedAt, now());
+                if (age.toMillis() * 2 >= snapshotLagSeconds * 1000) {
+                    throw new OverloadedException(
+                            "The transaction took too long to commit, please retry");
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResource(Ledger.this);
+            }
+        });
+    }
+
+    void snapshot() {
+        try {
+            LocalDateTime now = now();
+            Integer snapshots = transactionTemplate.execute(status -> ledgerPostingRepository
+                    .snapshot(now.minusSeconds(snapshotLagSeconds), now));
+            logger.debug("Took {} ledger balance snapshots", snapshots);
+        } catch (RuntimeException e) {
+            logger.error("Taking ledger balance snapshots failed", e);
+        }
+    }
+
+    // The clock postings are stamped with
+    static LocalDateTime now() {
+        return LocalDateTime.now(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,71 @@
+package com.imansdev.ackownt.service;
+
+import com.imansdev.ackownt.model.Account;
+import com.imansdev.ackownt.repository.AccountRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+// Appends ledger postings instead of rewriting the balance column. Credits never wait on other
+// writers; debits lock the account row (without updating it) so two of them cannot both pass the
+// balance check, which also keeps the account-id lock order used by transfers and settlements.
+// Entries are posted under the reference of the transaction recording them.
+@Component
+@ConditionalOnProperty(name = "account.balanceStrategy", havingValue = "ledger")
+public class LedgerBalanceStrategy implements BalanceStrategy {
+
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private Ledger ledger;
+
+    @Override
+    @Transactional
+    public long credit(Long userId, long amount, String reference) {
+        long accountId = accountRepository.findBalanceByUserId(userId)
+                .orElseThrow(BalanceStrategy::accountNotFound).getId();
+        ledger.post(reference, accountId, amount);
+        return ledger.balance(accountId);
+    }
+
+    @Override
+    @Transactional
+    public long debit(Long userId, long amount, long minBalance, String reference) {
+        long accountId = accountRepository.lockIdByUserId(userId)
+                .orElseThrow(BalanceStrategy::accountNotFound);
+        long balance = checkedBalance(accountId, amount, minBalance);
+        ledger.post(reference, accountId, -amount);
+        return balance - amount;
+    }
+
+    // Moves the amount to the recipient's account as one entry and returns the sender's new
+    // balance. Only the sender's row is locked, as for a debit.
+    @Transactional
+    public long transfer(Long userId, long recipientAccountId, long amount, long minBalance,
+            String reference) {
+        long accountId = accountRepository.lockIdByUserId(userId)
+                .orElseThrow(BalanceStrategy::accountNotFound);
+        long balance = checkedBalance(accountId, amount, minBalance);
+        ledger.post(reference, accountId, recipientAccountId, amount);
+        return balance - amount;
+    }
+
+    private long checkedBalance(long accountId, long amount, long minBalance) {
+        long balance = ledger.balance(accountId);
+        if (balance - minBalance < amount) {
+            throw BalanceStrategy.insufficientBalance();
+        }
+        return balance;
+    }
+
+    @Override
+    public void opened(Account account) {
+        ledger.open(account.getId(), account.getBalance());
+    }
+
+    @Override
+    public long balance(Account account) {
+        return ledger.balance(account.getId());
+    }
+}
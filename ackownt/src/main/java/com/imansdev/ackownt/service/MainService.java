@@ -1,31 +1,54 @@
 package com.imansdev.ackownt.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.imansdev.ackownt.auth.JwtUtil;
+import com.imansdev.ackownt.auth.PrincipalCache;
+import com.imansdev.ackownt.auth.TokenDenylist;
+import com.imansdev.ackownt.config.ReplicaRoutingDataSource;
 import com.imansdev.ackownt.dto.AccountDTO;
+import com.imansdev.ackownt.dto.TransactionFilterDTO;
+import com.imansdev.ackownt.dto.TransactionPageDTO;
 import com.imansdev.ackownt.dto.TransactionDTO;
 import com.imansdev.ackownt.dto.UpdateUserDTO;
 import com.imansdev.ackownt.dto.UserDTO;
 import com.imansdev.ackownt.enums.TransactionDescription;
 import com.imansdev.ackownt.enums.TransactionStatus;
 import com.imansdev.ackownt.enums.TransactionType;
+import com.imansdev.ackownt.exception.OverloadedException;
 import com.imansdev.ackownt.model.Account;
+import com.imansdev.ackownt.model.DailyDeduction;
 import com.imansdev.ackownt.model.Transaction;
 import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.repository.AccountBalanceView;
 import com.imansdev.ackownt.repository.AccountRepository;
+import com.imansdev.ackownt.repository.DailyDeductionRepository;
 import com.imansdev.ackownt.repository.TransactionRepository;
 import com.imansdev.ackownt.repository.CustomerRepository;
+import com.imansdev.ackownt.repository.CustomerUniqueKeys;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ValidationException;
 import jakarta.validation.Validator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 
 @Service
 public class MainService {
@@ -35,13 +58,48 @@ public class MainService {
     @Autowired
     private AccountRepository accountRepository;
     @Autowired
+    private AccountIdCache accountIdCache;
+    @Autowired
     private TransactionRepository transactionRepository;
     @Autowired
+    private DailyDeductionRepository dailyDeductionRepository;
+    @Autowired
     private BCryptPasswordEncoder passwordEncoder;
     @Autowired
     private JwtUtil jwtUtil;
     @Autowired
+    private PrincipalCache principalCache;
+    @Autowired
+    private TokenDenylist tokenDenylist;
+    @Autowired
+    private UniqueKeyFilter uniqueKeyFilter;
+    @Autowired
     private Validator validator;
+    @Autowired
+    private BalanceStrategy balanceStrategy;
+    @Autowired
+    private IdGenerator idGenerator;
+    @Autowired
+    private ObjectMapper objectMapper;
+    // Present only when transaction.journal.enabled is set
+    @Autowired(required = false)
+    private TransactionJournal transactionJournal;
+    // Present only when account.engine is memory
+    @Autowired(required = false)
+    private AccountEngine accountEngine;
+    // Present only when account.striping.enabled is set
+    @Autowired(required = false)
+    private AccountStripes accountStripes;
+    // Present only when groupCommit.enabled is set
+    @Autowired(required = false)
+    private GroupCommitter groupCommitter;
+    // Present only when account.balanceStrategy is ledger
+    @Autowired(required = false)
+    private LedgerBalanceStrategy ledgerBalanceStrategy;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @PersistenceContext
+    private EntityManager entityManager;
 
     @Value("${account.minBalance}")
     private long minBalance;
@@ -49,14 +107,25 @@ public class MainService {
     private long maxWithdrawal;
     @Value("${account.minWithdrawal}")
     private long minWithdrawal;
-
-    // Create a new User
-    @Transactional
+    @Value("${transaction.defaultPageSize}")
+    private int defaultPageSize;
+    @Value("${transaction.maxPageSize}")
+    private int maxPageSize;
+
+    // Create a new User. Not one transaction, so no connection is held while the password waits
+    // for the bounded hashing pool; the unique constraints still catch racing registrations and
+    // values the filters have not seen.
     public UserDTO createUser(Customer user) {
         validateUniqueUserFields(user);
         validateUser(user);
         user.setPassword(passwordEncoder.encode(user.getPassword()));
-        customerRepository.save(user);
+        try {
+            customerRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            checkUniqueUserFields(user);
+            throw e;
+        }
+        uniqueKeyFilter.add(user.getEmail(), user.getPhoneNumber(), user.getNationalId());
         return convertToUserDTO(user);
     }
 
@@ -68,39 +137,89 @@ public class MainService {
         Customer user = getUserByEmail(email);
         validateUserAccountDoesNotExist(user);
         Account account = createNewAccount(user, amount);
-        Transaction transaction = recordTransaction(user, account, amount, TransactionType.CHARGE,
-                TransactionDescription.CHARGING_SUCCESSFUL);
+        Transaction transaction = recordTransaction(user, account.getBalance(), amount,
+                TransactionType.CHARGE, TransactionDescription.CHARGING_SUCCESSFUL,
+                idGenerator.nextTrackingNumber(), null);
         return convertToTransactionDTO(transaction);
     }
 
-    // Charge an account
-    @Transactional
+    // Charge an account. The engine and group commit paths stay outside a transaction so callers
+    // waiting on them do not hold database connections they need themselves.
     public TransactionDTO chargeAccount(String email, Long amount) {
         validateAmountIsPositive(amount);
-        Customer user = getUserByEmail(email);
-        Account account = getUserAccount(user);
-        TransactionDescriptionForCharge(account, amount);
-        Transaction transaction = recordTransaction(user, account, amount, TransactionType.CHARGE,
-                TransactionDescription.CHARGING_SUCCESSFUL);
-        return convertToTransactionDTO(transaction);
+        if (accountEngine != null) {
+            return accountEngine.charge(getUserByEmail(email).getId(), amount);
+        }
+        if (groupCommitter != null) {
+            Customer user = getUserByEmail(email);
+            return groupCommitter.submit(lockOrder(user), () -> applyCharge(user, amount));
+        }
+        return transactionTemplate.execute(status -> applyCharge(getUserByEmail(email), amount));
     }
 
     // Deduct an amount from the account
-    @Transactional
     public TransactionDTO deductAmount(String email, Long amount) {
+        validateAmountIsPositive(amount);
+        validateWithdrawalAmount(amount);
+        if (accountEngine != null) {
+            return accountEngine.deduct(getUserByEmail(email).getId(), amount);
+        }
+        if (groupCommitter != null) {
+            Customer user = getUserByEmail(email);
+            return groupCommitter.submit(lockOrder(user), () -> applyDeduction(user, amount));
+        }
+        return transactionTemplate.execute(
+                status -> applyDeduction(getUserByEmail(email), amount));
+    }
+
+    // Move an amount from the user's account to another account in one transaction
+    @Transactional
+    public TransactionDTO transfer(String email, String toAccountNumber, Long amount) {
+        validateEngineDisabled("Transfers");
         validateAmountIsPositive(amount);
         validateWithdrawalAmount(amount);
         Customer user = getUserByEmail(email);
-        Account account = getUserAccount(user);
-        validateSufficientBalance(account, amount);
-        validateDailyDeductions(user, amount);
-        updateAccountBalanceForDeduction(account, amount);
-        Transaction transaction = recordTransaction(user, account, amount,
-                TransactionType.DEDUCTION, TransactionDescription.DEDUCTION_SUCCESSFUL);
+        AccountBalanceView source = accountRepository.findBalanceByUserId(user.getId())
+                .orElseThrow(BalanceStrategy::accountNotFound);
+        Account target = accountRepository.findByAccountNumber(toAccountNumber)
+                .orElseThrow(() -> new ValidationException("Recipient account not found"));
+        if (target.getId().equals(source.getId())) {
+            throw new ValidationException("Cannot transfer to the same account");
+        }
+        Customer recipient = target.getUser();
+
+        String transferReference = UUID.randomUUID().toString();
+        String recipientTrackingNumber = idGenerator.nextTrackingNumber();
+        String trackingNumber = idGenerator.nextTrackingNumber();
+        long balance;
+        long recipientBalance;
+        if (ledgerBalanceStrategy != null) {
+            // One ledger entry between the two accounts, under the reference both rows share
+            balance = ledgerBalanceStrategy.transfer(user.getId(), target.getId(), amount,
+                    minBalance, transferReference);
+            recipientBalance = ledgerBalanceStrategy.balance(target);
+        } else if (source.getId() < target.getId()) {
+            // Both rows are locked in ascending account id order, so opposing transfers cannot
+            // deadlock
+            balance = debit(user.getId(), amount, trackingNumber);
+            recipientBalance = credit(recipient.getId(), amount, recipientTrackingNumber);
+        } else {
+            recipientBalance = credit(recipient.getId(), amount, recipientTrackingNumber);
+            balance = debit(user.getId(), amount, trackingNumber);
+        }
+        reserveDailyDeduction(user, amount);
+
+        recordTransaction(recipient, recipientBalance, amount, TransactionType.TRANSFER_IN,
+                TransactionDescription.TRANSFER_SUCCESSFUL, recipientTrackingNumber,
+                transferReference);
+        Transaction transaction = recordTransaction(user, balance, amount,
+                TransactionType.TRANSFER_OUT, TransactionDescription.TRANSFER_SUCCESSFUL,
+                trackingNumber, transferReference);
         return convertToTransactionDTO(transaction);
     }
 
     // Get user account information and transactions
+    @Transactional(readOnly = true)
     public Map<String, Object> getUserAccountInfoAndTransactions(String email) {
         Customer user = getUserByEmail(email);
         Account account = getUserAccount(user);
@@ -113,7 +232,60 @@ public class MainService {
         return response;
     }
 
+    // Get one page of the user's transactions, newest first
+    @Transactional(readOnly = true)
+    public TransactionPageDTO getUserTransactionsPage(String email, TransactionFilterDTO filter,
+            String cursor, Integer size) {
+        int pageSize = resolvePageSize(size);
+        validateTransactionFilter(filter);
+        Customer user = getUserByEmail(email);
+
+        LocalDate cursorDate = null;
+        Long cursorId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] position = decodeCursor(cursor);
+            cursorDate = LocalDate.parse(position[0]);
+            cursorId = Long.valueOf(position[1]);
+        }
+
+        // One extra row tells whether another page follows
+        List<Transaction> transactions = transactionRepository.findPage(user.getId(),
+                filter.getFrom(), filter.getTo(), filter.getType(), filter.getMinAmount(),
+                filter.getMaxAmount(), cursorDate, cursorId, PageRequest.ofSize(pageSize + 1));
+        boolean hasMore = transactions.size() > pageSize;
+        if (hasMore) {
+            transactions = transactions.subList(0, pageSize);
+        }
+        String nextCursor = hasMore ? encodeCursor(transactions.get(transactions.size() - 1)) : null;
+
+        return new TransactionPageDTO(transactions.stream().map(this::convertToTransactionDTO)
+                .collect(Collectors.toList()), nextCursor);
+    }
+
+    // Write the user's full transaction history as NDJSON, one row at a time
+    @Transactional(readOnly = true)
+    public void exportUserTransactions(String email, OutputStream outputStream)
+            throws IOException {
+        Customer user = getUserByEmail(email);
+        ObjectWriter writer = objectMapper.writerFor(TransactionDTO.class);
+        OutputStream out = new BufferedOutputStream(outputStream, 16 * 1024);
+
+        try (Stream<Transaction> transactions =
+                transactionRepository.streamByUserId(user.getId())) {
+            Iterator<Transaction> iterator = transactions.iterator();
+            while (iterator.hasNext()) {
+                Transaction transaction = iterator.next();
+                out.write(writer.writeValueAsBytes(convertToTransactionDTO(transaction)));
+                out.write('\n');
+                // Keep the persistence context from growing with the history
+                entityManager.detach(transaction);
+            }
+        }
+        out.flush();
+    }
+
     // Get user info
+    @Transactional(readOnly = true)
     public UserDTO getUserInfo(String email) {
         Customer user = getUserByEmail(email);
         return convertToUserDTO(user);
@@ -133,6 +305,8 @@ public class MainService {
         }
         validateUser(user);
         customerRepository.save(user);
+        uniqueKeyFilter.addPhoneNumber(user.getPhoneNumber());
+        principalCache.invalidate(email);
         return convertToUserDTO(user);
     }
 
@@ -141,7 +315,15 @@ public class MainService {
     public void deleteUserAndRelatedData(String email) {
         Customer user = getUserByEmail(email);
         transactionRepository.deleteByUserId(user.getId());
+        dailyDeductionRepository.deleteByUserId(user.getId());
+        if (accountStripes != null) {
+            accountStripes.removed(user.getId());
+        }
+        accountRepository.deleteByUserId(user.getId());
         customerRepository.deleteById(user.getId());
+        accountIdCache.invalidate(user.getId());
+        principalCache.invalidate(email);
+        tokenDenylist.revokeAll(email);
     }
 
     // Authenticate user and generate JWT token
@@ -150,41 +332,93 @@ public class MainService {
         return jwtUtil.generateToken(user.getEmail());
     }
 
+    // Revoke the token a request was authorized with
+    public void logout(String token) {
+        tokenDenylist.revoke(token, jwtUtil.verify(token));
+    }
+
+    // Revoke every token issued to the user so far
+    public void logoutEverywhere(String email) {
+        tokenDenylist.revokeAll(email);
+    }
+
     // Authenticate user
     public Customer authenticateUser(String email, String password) {
         Customer user = getUserByEmail(email);
         if (!passwordEncoder.matches(password, user.getPassword())) {
             throw new ValidationException("Invalid password");
         }
+        if (passwordEncoder.upgradeEncoding(user.getPassword())) {
+            rehashPassword(user, password);
+        }
         return user;
     }
 
+    // Stores the password again with the current strength. Best effort: the login has already
+    // succeeded, and a busy hashing pool or a concurrent password change just skips it. Saved
+    // through the entity, so only this customer's cache entry is updated.
+    private void rehashPassword(Customer user, String password) {
+        try {
+            String rehashed = passwordEncoder.encode(password);
+            Boolean replaced = transactionTemplate.execute(status -> customerRepository
+                    .lockById(user.getId())
+                    .filter(stored -> stored.getPassword().equals(user.getPassword()))
+                    .map(stored -> {
+                        stored.setPassword(rehashed);
+                        return true;
+                    }).orElse(false));
+            if (Boolean.TRUE.equals(replaced)) {
+                user.setPassword(rehashed);
+            }
+        } catch (OverloadedException e) {
+            // Rehashed on a later login instead
+        }
+    }
+
     // ----- Helper Methods -----
     private Account getUserAccount(Customer user) {
-        return accountRepository.findByUserId(user.getId())
+        return getUserAccountId(user).flatMap(accountRepository::findById)
                 .orElseThrow(() -> new ValidationException("User's account not found"));
     }
 
+    private Optional<Long> getUserAccountId(Customer user) {
+        return accountIdCache.get(user.getId(), accountRepository::findIdByUserId);
+    }
+
     // Helper method to validate user existence
     private Customer getUserByEmail(String email) {
         return customerRepository.findByEmail(email).orElseThrow(
                 () -> new UsernameNotFoundException("User not found with email: " + email));
     }
 
-    // Helper method to validate if user exists based on national ID, email, and phone number
+    // Helper method to validate if user exists based on national ID, email, and phone number;
+    // values the filters have never seen skip the database
     private void validateUniqueUserFields(Customer user) {
-        if (customerRepository.findByEmail(user.getEmail()).isPresent()) {
+        if (uniqueKeyFilter.mightExist(user.getEmail(), user.getPhoneNumber(),
+                user.getNationalId())) {
+            checkUniqueUserFields(user);
+        }
+    }
+
+    // One query for all three values, reported in the order they used to be checked
+    private void checkUniqueUserFields(Customer user) {
+        List<CustomerUniqueKeys> taken = customerRepository.findByEmailOrPhoneNumberOrNationalId(
+                user.getEmail(), user.getPhoneNumber(), user.getNationalId());
+        if (taken.stream().anyMatch(keys -> keys.getEmail().equals(user.getEmail()))) {
             throw new ValidationException("Email must be unique");
         }
-        if (customerRepository.findByPhoneNumber(user.getPhoneNumber()).isPresent()) {
+        if (taken.stream().anyMatch(keys -> keys.getPhoneNumber().equals(user.getPhoneNumber()))) {
             throw new ValidationException("Phone number must be unique");
         }
-        if (customerRepository.findByNationalId(user.getNationalId()).isPresent()) {
+        if (taken.stream().anyMatch(keys -> keys.getNationalId().equals(user.getNationalId()))) {
             throw new ValidationException("National ID must be unique");
         }
     }
 
     private void validateUniquePhoneNumber(Customer user, String phoneNumber) {
+        if (!uniqueKeyFilter.mightExistPhoneNumber(phoneNumber)) {
+            return;
+        }
         customerRepository.findByPhoneNumber(phoneNumber).ifPresent(existingUser -> {
             if (!existingUser.getId().equals(user.getId())) {
                 throw new ValidationException("Phone number must be unique");
@@ -217,51 +451,134 @@ public class MainService {
         }
     }
 
-    private void validateDailyDeductions(Customer user, Long amount) {
+    // Runs after the balance update, which already holds the account row lock, so creating the
+    // day's row cannot race with another deduction of the same user
+    private void reserveDailyDeduction(Customer user, Long amount) {
         LocalDate today = LocalDate.now();
-        Long totalDeductionsToday =
-                transactionRepository.findTotalDailyDeductions(user.getId(), today);
-
-        if (totalDeductionsToday + amount > maxWithdrawal) {
+        if (dailyDeductionRepository.reserve(user.getId(), today, amount, maxWithdrawal) == 1) {
+            return;
+        }
+        if (amount > maxWithdrawal
+                || dailyDeductionRepository.existsByUserIdAndDeductionDate(user.getId(), today)) {
             throw new ValidationException(
                     "Total daily deductions must be less than " + maxWithdrawal);
         }
+        dailyDeductionRepository.save(new DailyDeduction(user, today, amount));
+    }
+
+    private TransactionDTO applyCharge(Customer user, Long amount) {
+        String trackingNumber = idGenerator.nextTrackingNumber();
+        long balance = credit(user.getId(), amount, trackingNumber);
+        Transaction transaction = recordTransaction(user, balance, amount, TransactionType.CHARGE,
+                TransactionDescription.CHARGING_SUCCESSFUL, trackingNumber, null);
+        return convertToTransactionDTO(transaction);
+    }
+
+    private TransactionDTO applyDeduction(Customer user, Long amount) {
+        String trackingNumber = idGenerator.nextTrackingNumber();
+        long balance = debit(user.getId(), amount, trackingNumber);
+        reserveDailyDeduction(user, amount);
+        Transaction transaction = recordTransaction(user, balance, amount,
+                TransactionType.DEDUCTION, TransactionDescription.DEDUCTION_SUCCESSFUL,
+                trackingNumber, null);
+        return convertToTransactionDTO(transaction);
+    }
+
+    // Striped accounts take credits into their stripes instead of the account row
+    private long credit(Long userId, long amount, String trackingNumber) {
+        return accountStripes != null && accountStripes.isStriped(userId)
+                ? accountStripes.credit(userId, amount)
+                : balanceStrategy.credit(userId, amount, trackingNumber);
+    }
+
+    private long debit(Long userId, long amount, String trackingNumber) {
+        return accountStripes != null && accountStripes.isStriped(userId)
+                ? accountStripes.debit(userId, amount, minBalance)
+                : balanceStrategy.debit(userId, amount, minBalance, trackingNumber);
     }
 
-    private void validateSufficientBalance(Account account, Long amount) {
-        if (account.getBalance() - minBalance < amount) {
-            throw new ValidationException("Insufficient balance for this deduction");
+    // Group commits lock accounts in ascending id order, like transfers; users without an
+    // account fail in their strategy call and lock nothing
+    private long lockOrder(Customer user) {
+        return getUserAccountId(user).orElse(Long.MAX_VALUE);
+    }
+
+    // Balances owned by the in-memory engine must not be changed behind its back
+    private void validateEngineDisabled(String operation) {
+        if (accountEngine != null) {
+            throw new ValidationException(
+                    operation + " are not available while the in-memory account engine is enabled");
+        }
+    }
+
+    private int resolvePageSize(Integer size) {
+        if (size == null) {
+            return defaultPageSize;
+        }
+        if (size <= 0 || size > maxPageSize) {
+            throw new ValidationException("Page size must be between 1 and " + maxPageSize);
+        }
+        return size;
+    }
+
+    private void validateTransactionFilter(TransactionFilterDTO filter) {
+        if (filter.getFrom() != null && filter.getTo() != null
+                && filter.getFrom().isAfter(filter.getTo())) {
+            throw new ValidationException("The from date must not be after the to date");
+        }
+        if (filter.getMinAmount() != null && filter.getMaxAmount() != null
+                && filter.getMinAmount() > filter.getMaxAmount()) {
+            throw new ValidationException("The minimum amount must not exceed the maximum amount");
+        }
+    }
+
+    // The cursor is the (transactionDate, id) of the last row of the previous page
+    private String encodeCursor(Transaction transaction) {
+        String position = transaction.getTransactionDate() + "_" + transaction.getId();
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] decodeCursor(String cursor) {
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor),
+                    StandardCharsets.UTF_8).split("_");
+            LocalDate.parse(position[0]);
+            Long.parseLong(position[1]);
+            return position;
+        } catch (IllegalArgumentException | DateTimeParseException
+                | ArrayIndexOutOfBoundsException e) {
+            throw new ValidationException("Invalid cursor");
         }
     }
 
     private Account createNewAccount(Customer user, Long amount) {
         Account account = new Account();
         account.setUser(user);
+        account.setAccountNumber(idGenerator.nextAccountNumber());
         account.setBalance(amount);
         accountRepository.save(account);
+        balanceStrategy.opened(account);
         return account;
     }
 
-    private void TransactionDescriptionForCharge(Account account, Long amount) {
-        account.setBalance(account.getBalance() + amount);
-        accountRepository.save(account);
-    }
-
-    private void updateAccountBalanceForDeduction(Account account, Long amount) {
-        account.setBalance(account.getBalance() - amount);
-        accountRepository.save(account);
-    }
-
-    private Transaction recordTransaction(Customer user, Account account, Long amount,
-            TransactionType type, TransactionDescription description) {
+    private Transaction recordTransaction(Customer user, long balance, Long amount,
+            TransactionType type, TransactionDescription description, String trackingNumber,
+            String transferReference) {
         Transaction transaction = new Transaction();
         transaction.setUser(user);
+        transaction.setTrackingNumber(trackingNumber);
         transaction.setTransactionName(type);
         transaction.setTransactionStatus(TransactionStatus.SUCCESSFUL);
         transaction.setAmount(amount);
         transaction.setDescription(description);
-        transaction.setWithdrawalBalance(account.getBalance() - minBalance);
-        transactionRepository.save(transaction);
+        transaction.setWithdrawalBalance(balance - minBalance);
+        transaction.setTransferReference(transferReference);
+        if (transactionJournal != null) {
+            transactionJournal.append(transaction);
+        } else {
+            transactionRepository.save(transaction);
+        }
         return transaction;
     }
 
@@ -297,11 +614,15 @@ public class MainService {
         return new TransactionDTO(transaction.getTransactionName().toString(),
                 transaction.getTransactionStatus().toString(), transaction.getAmount(),
                 transaction.getTrackingNumber(), transaction.getTransactionDate(),
-                transaction.getDescription().toString(), transaction.getWithdrawalBalance());
+                transaction.getDescription().toString(), transaction.getWithdrawalBalance(),
+                transaction.getTransferReference());
     }
 
     private AccountDTO convertToAccountDTO(Account account) {
-        return new AccountDTO(account.getAccountNumber(), account.getBalance(),
+        long balance = accountEngine != null ? accountEngine.balance(account)
+                : accountStripes != null ? accountStripes.balance(account)
+                : balanceStrategy.balance(account);
+        return new AccountDTO(account.getAccountNumber(), balance,
                 account.getAccountCreationDate());
     }
 }
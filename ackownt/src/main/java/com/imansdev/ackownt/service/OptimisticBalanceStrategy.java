@@ -0,0 +1,51 @@
+package com.imansdev.ackownt.service;
+
+import com.imansdev.ackownt.repository.AccountBalanceView;
+import com.imansdev.ackownt.repository.AccountRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+// Reads the balance and version, then compare-and-sets against the Account @Version column
+@Component
+@ConditionalOnProperty(name = "account.balanceStrategy", havingValue = "optimistic")
+public class OptimisticBalanceStrategy implements BalanceStrategy {
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Value("${account.optimisticMaxRetries:5}")
+    private int maxRetries;
+
+    @Override
+    @Transactional
+    public long credit(Long userId, long amount, String reference) {
+        return apply(userId, amount, Long.MIN_VALUE);
+    }
+
+    @Override
+    @Transactional
+    public long debit(Long userId, long amount, long minBalance, String reference) {
+        return apply(userId, -amount, minBalance);
+    }
+
+    private long apply(Long userId, long delta, long minBalance) {
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            AccountBalanceView account = accountRepository.findBalanceByUserId(userId)
+                    .orElseThrow(BalanceStrategy::accountNotFound);
+            long newBalance = account.getBalance() + delta;
+            if (delta < 0 && newBalance < minBalance) {
+                throw BalanceStrategy.insufficientBalance();
+            }
+            if (accountRepository.compareAndSetBalance(account.getId(), newBalance,
+                    account.getVersion()) == 1) {
+                return newBalance;
+            }
+        }
+        throw new OptimisticLockingFailureException(
+                "Account is being updated concurrently, please retry");
+    }
+}
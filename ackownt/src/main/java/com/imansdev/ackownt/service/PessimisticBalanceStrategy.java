@@ -0,0 +1,50 @@
+package com.imansdev.ackownt.service;
+
+import com.imansdev.ackownt.model.Account;
+import com.imansdev.ackownt.repository.AccountRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+// Serializes writers on the account row with SELECT ... FOR UPDATE
+@Component
+@ConditionalOnProperty(name = "account.balanceStrategy", havingValue = "pessimistic")
+public class PessimisticBalanceStrategy implements BalanceStrategy {
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public long credit(Long userId, long amount, String reference) {
+        Account account = lockAccount(userId);
+        account.setBalance(account.getBalance() + amount);
+        return account.getBalance();
+    }
+
+    @Override
+    @Transactional
+    public long debit(Long userId, long amount, long minBalance, String reference) {
+        Account account = lockAccount(userId);
+        if (account.getBalance() - minBalance < amount) {
+            throw BalanceStrategy.insufficientBalance();
+        }
+        account.setBalance(account.getBalance() - amount);
+        return account.getBalance();
+    }
+
+    // The account may already be managed in this persistence context, so refresh it under the lock
+    private Account lockAccount(Long userId) {
+        Account account = accountRepository.findByUserId(userId)
+                .orElseThrow(BalanceStrategy::accountNotFound);
+        entityManager.refresh(account, LockModeType.PESSIMISTIC_WRITE);
+        return account;
+    }
+}
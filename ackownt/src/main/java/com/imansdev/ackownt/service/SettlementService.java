@@ -0,0 +1,331 @@
+package com.imansdev.ackownt.service;
+
+import com.imansdev.ackownt.dto.SettlementLineDTO;
+import com.imansdev.ackownt.dto.SettlementLineResultDTO;
+import com.imansdev.ackownt.dto.SettlementReportDTO;
+import com.imansdev.ackownt.enums.TransactionDescription;
+import com.imansdev.ackownt.enums.TransactionStatus;
+import com.imansdev.ackownt.enums.TransactionType;
+import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.model.Transaction;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ValidationException;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Applies many charge/deduction lines across accounts in one request. Lines are settled in chunks,
+ * each chunk in its own transaction: the chunk's accounts are locked in id order, every line is
+ * checked against the same rules as {@link MainService#chargeAccount} and
+ * {@link MainService#deductAmount}, and the resulting account and daily deduction rows are written
+ * with JDBC batches. Transaction rows are persisted through JPA, which batches their inserts since
+ * their ids come from a pooled sequence. A line that breaks a rule fails on its own; any other
+ * error, such as a database error or a chunk that cannot commit, fails its whole chunk. In ledger
+ * mode balances are read from the {@link Ledger} and every line is posted to it instead of
+ * rewriting the balance column. Striped accounts' stripes count towards their balance; a deduction
+ * the balance column cannot cover on its own merges stripes into it first, as
+ * {@link AccountStripes#debit} does, since the column may never go below the minimum balance.
+ */
+@Service
+public class SettlementService {
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    @Autowired
+    private IdGenerator idGenerator;
+    @PersistenceContext
+    private EntityManager entityManager;
+    // Present only when account.balanceStrategy is ledger
+    @Autowired(required = false)
+    private Ledger ledger;
+    // Present only when account.striping.enabled is set
+    @Autowired(required = false)
+    private AccountStripes accountStripes;
+    // Present only when account.engine is memory, which owns the balances settlements would change
+    @Autowired(required = false)
+    private AccountEngine accountEngine;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${account.minBalance}")
+    private long minBalance;
+    @Value("${account.maxWithdrawal}")
+    private long maxWithdrawal;
+    @Value("${account.minWithdrawal}")
+    private long minWithdrawal;
+    @Value("${settlement.chunkSize}")
+    private int chunkSize;
+    @Value("${settlement.maxLines}")
+    private int maxLines;
+
+    public SettlementService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public SettlementReportDTO settle(List<SettlementLineDTO> lines) {
+        if (accountEngine != null) {
+            throw new ValidationException(
+                    "Settlements are not available while the in-memory account engine is enabled");
+        }
+        if (lines == null || lines.isEmpty() || lines.size() > maxLines) {
+            throw new ValidationException(
+                    "A settlement must contain between 1 and " + maxLines + " lines");
+        }
+
+        SettlementLineResultDTO[] results = new SettlementLineResultDTO[lines.size()];
+        for (int start = 0; start < lines.size(); start += chunkSize) {
+            int from = start;
+            int to = Math.min(start + chunkSize, lines.size());
+            try {
+                transactionTemplate.executeWithoutResult(status -> settleChunk(lines, from, to,
+                        results));
+            } catch (RuntimeException e) {
+                // Earlier chunks have committed, so the report must still reach the caller
+                String error = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+                for (int i = from; i < to; i++) {
+                    results[i] = failed(i, lines.get(i), "Settlement failed: " + error);
+                }
+            }
+        }
+
+        int succeeded = (int) Arrays.stream(results)
+                .filter(result -> TransactionStatus.SUCCESSFUL.toString()
+                        .equals(result.getStatus()))
+                .count();
+        return new SettlementReportDTO(succeeded, results.length - succeeded,
+                Arrays.asList(results));
+    }
+
+    private void settleChunk(List<SettlementLineDTO> lines, int from, int to,
+            SettlementLineResultDTO[] results) {
+        LocalDate today = LocalDate.now();
+        Map<String, AccountState> accounts = lockAccounts(lines.subList(from, to));
+        Map<Long, DailyState> dailyDeductions = loadDailyDeductions(accounts.values(), today);
+        List<Transaction> transactions = new ArrayList<>();
+
+        for (int i = from; i < to; i++) {
+            SettlementLineDTO line = lines.get(i);
+            try {
+                AccountState account = applyLine(line, accounts, dailyDeductions);
+                String trackingNumber = idGenerator.nextTrackingNumber();
+                long withdrawalBalance = account.balance + account.striped - minBalance;
+                boolean charge = line.getType() == TransactionType.CHARGE;
+                if (ledger != null) {
+                    ledger.post(trackingNumber, account.id,
+                            charge ? line.getAmount() : -line.getAmount());
+                }
+                Transaction transaction = new Transaction();
+                transaction.setUser(entityManager.getReference(Customer.class, account.userId));
+                transaction.setTransactionName(line.getType());
+                transaction.setTransactionStatus(TransactionStatus.SUCCESSFUL);
+                transaction.setAmount(line.getAmount());
+                transaction.setTrackingNumber(trackingNumber);
+                transaction.setDescription(charge ? TransactionDescription.CHARGING_SUCCESSFUL
+                        : TransactionDescription.DEDUCTION_SUCCESSFUL);
+                transaction.setWithdrawalBalance(withdrawalBalance);
+                transactions.add(transaction);
+                results[i] = new SettlementLineResultDTO(i, line.getAccountNumber(),
+                        TransactionStatus.SUCCESSFUL.toString(), trackingNumber,
+                        withdrawalBalance, null);
+            } catch (ValidationException e) {
+                results[i] = failed(i, line, e.getMessage());
+            }
+        }
+
+        if (ledger == null) {
+            writeAccounts(accounts.values());
+        }
+        writeDailyDeductions(dailyDeductions, today);
+        // Flushed in batches on commit, where failures are translated to DataAccessException
+        transactions.forEach(entityManager::persist);
+    }
+
+    private AccountState applyLine(SettlementLineDTO line, Map<String, AccountState> accounts,
+            Map<Long, DailyState> dailyDeductions) {
+        if (line.getType() != TransactionType.CHARGE
+                && line.getType() != TransactionType.DEDUCTION) {
+            throw new ValidationException("Transaction type must be CHARGE or DEDUCTION");
+        }
+        validateAmountIsPositive(line.getAmount());
+        if (line.getType() == TransactionType.DEDUCTION) {
+            validateWithdrawalAmount(line.getAmount());
+        }
+        AccountState account = accounts.get(line.getAccountNumber());
+        if (account == null) {
+            throw new ValidationException("Account not found: " + line.getAccountNumber());
+        }
+
+        if (line.getType() == TransactionType.CHARGE) {
+            account.balance += line.getAmount();
+        } else {
+            if (account.balance + account.striped - minBalance < line.getAmount()) {
+                throw new ValidationException("Insufficient balance for this deduction");
+            }
+            DailyState daily = dailyDeductions.computeIfAbsent(account.userId,
+                    userId -> new DailyState(null, 0));
+            if (daily.total + line.getAmount() > maxWithdrawal) {
+                throw new ValidationException(
+                        "Total daily deductions must be less than " + maxWithdrawal);
+            }
+            daily.total += line.getAmount();
+            daily.changed = true;
+            if (account.striped != 0 && account.balance - line.getAmount() < minBalance) {
+                mergeStripes(account, line.getAmount());
+            }
+            account.balance -= line.getAmount();
+        }
+        account.changed = true;
+        return account;
+    }
+
+    // Locks every account of the chunk in id order so concurrent settlements cannot deadlock
+    private Map<String, AccountState> lockAccounts(List<SettlementLineDTO> lines) {
+        Set<String> accountNumbers = lines.stream().map(SettlementLineDTO::getAccountNumber)
+                .filter(Objects::nonNull).collect(Collectors.toCollection(TreeSet::new));
+        Map<String, AccountState> accounts = new HashMap<>();
+        if (accountNumbers.isEmpty()) {
+            return accounts;
+        }
+        jdbcTemplate.query(
+                "SELECT id, user_id, account_number, balance FROM account "
+                        + "WHERE account_number IN (:accountNumbers) ORDER BY id FOR UPDATE",
+                Map.of("accountNumbers", accountNumbers),
+                rs -> {
+                    accounts.put(rs.getString("account_number"), new AccountState(
+                            rs.getLong("id"), rs.getLong("user_id"), rs.getLong("balance")));
+                });
+        if (ledger != null) {
+            Map<Long, Long> balances = ledger.balances(
+                    accounts.values().stream().map(account -> account.id)
+                            .collect(Collectors.toList()));
+            accounts.values().forEach(account -> account.balance = balances.get(account.id));
+        }
+        if (accountStripes != null) {
+            Map<Long, Long> striped = accountStripes.stripeTotals(
+                    accounts.values().stream().map(account -> account.id)
+                            .collect(Collectors.toList()));
+            accounts.values()
+                    .forEach(account -> account.striped = striped.getOrDefault(account.id, 0L));
+        }
+        return accounts;
+    }
+
+    // Merging can wait for credits that commit more to the stripes, so their total is read again
+    private void mergeStripes(AccountState account, long amount) {
+        account.balance += accountStripes.mergeFor(account.id, account.balance, amount, minBalance);
+        account.striped = accountStripes.stripeTotals(List.of(account.id))
+                .getOrDefault(account.id, 0L);
+    }
+
+    // Safe to read without a lock: every deduction path locks the account row first
+    private Map<Long, DailyState> loadDailyDeductions(Iterable<AccountState> accounts,
+            LocalDate today) {
+        List<Long> userIds = new ArrayList<>();
+        accounts.forEach(account -> userIds.add(account.userId));
+        Map<Long, DailyState> dailyDeductions = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return dailyDeductions;
+        }
+        jdbcTemplate.query(
+                "SELECT id, user_id, total FROM daily_deduction "
+                        + "WHERE user_id IN (:userIds) AND deduction_date = :today",
+                Map.of("userIds", userIds, "today", Date.valueOf(today)),
+                rs -> {
+                    dailyDeductions.put(rs.getLong("user_id"),
+                            new DailyState(rs.getLong("id"), rs.getLong("total")));
+                });
+        return dailyDeductions;
+    }
+
+    private void writeAccounts(Iterable<AccountState> accounts) {
+        List<Object[]> rows = new ArrayList<>();
+        accounts.forEach(account -> {
+            if (account.changed) {
+                rows.add(new Object[] {account.balance, account.id});
+            }
+        });
+        jdbcTemplate.getJdbcTemplate().batchUpdate(
+                "UPDATE account SET balance = ?, version = version + 1 WHERE id = ?", rows);
+    }
+
+    private void writeDailyDeductions(Map<Long, DailyState> dailyDeductions, LocalDate today) {
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        dailyDeductions.forEach((userId, daily) -> {
+            if (!daily.changed) {
+                return;
+            }
+            if (daily.id != null) {
+                updates.add(new Object[] {daily.total, daily.id});
+            } else {
+                inserts.add(new Object[] {userId, Date.valueOf(today), daily.total});
+            }
+        });
+        jdbcTemplate.getJdbcTemplate()
+                .batchUpdate("UPDATE daily_deduction SET total = ? WHERE id = ?", updates);
+        jdbcTemplate.getJdbcTemplate().batchUpdate(
+                "INSERT INTO daily_deduction (user_id, deduction_date, total) VALUES (?, ?, ?)",
+                inserts);
+    }
+
+    private SettlementLineResultDTO failed(int index, SettlementLineDTO line, String error) {
+        return new SettlementLineResultDTO(index, line.getAccountNumber(),
+                TransactionStatus.UNSUCCESSFUL.toString(), null, null, error);
+    }
+
+    private void validateAmountIsPositive(Long amount) {
+        if (amount == null || amount <= 0) {
+            throw new ValidationException("Amount must be a positive number");
+        }
+    }
+
+    private void validateWithdrawalAmount(Long amount) {
+        if (amount <= minWithdrawal || amount >= maxWithdrawal) {
+            throw new ValidationException(
+                    "Amount must be between " + minWithdrawal + " and " + maxWithdrawal);
+        }
+    }
+
+    private static final class AccountState {
+        private final long id;
+        private final long userId;
+        private long balance;
+        // Credits held in the account's stripes, which count towards its balance
+        private long striped;
+        private boolean changed;
+
+        private AccountState(long id, long userId, long balance) {
+            this.id = id;
+            this.userId = userId;
+            this.balance = balance;
+        }
+    }
+
+    private static final class DailyState {
+        private final Long id;
+        private long total;
+        private boolean changed;
+
+        private DailyState(Long id, long total) {
+            this.id = id;
+            this.total = total;
+        }
+    }
+}
@@ -0,0 +1,482 @@
+package com.imansdev.ackownt.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.imansdev.ackownt.enums.TransactionDescription;
+import com.imansdev.ackownt.enums.TransactionStatus;
+import com.imansdev.ackownt.enums.TransactionType;
+import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.model.Transaction;
+import com.imansdev.ackownt.repository.CustomerRepository;
+import com.imansdev.ackownt.repository.TransactionRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Write-behind store for transaction records. Instead of inserting the row inside the request's
+ * database transaction, {@link MainService} hands the record to the journal, which appends it as
+ * one JSON line to a local file and forces it to disk right before the balance update commits.
+ * Concurrent appends share a single fsync. A write or fsync that fails therefore fails the request
+ * and rolls its balance update back, so a committed balance change always has its record. If the
+ * transaction rolls back after the record was written, an abort marker naming its tracking number
+ * is appended, and the record is skipped. The failed write may have left part of a line behind, so
+ * the journal then refuses every later append until the service is restarted.
+ *
+ * <p>A background writer reads the durable part of the file in order, stopping before the first
+ * record whose transaction has not completed, inserts it into the transaction table in batches and
+ * then advances a checkpoint kept next to the journal; on startup everything after the checkpoint
+ * is replayed, apart from aborted records. Records whose tracking number is already stored are
+ * skipped, so a crash between an insert and its checkpoint does not duplicate them. Records only
+ * show up in transaction queries once the writer has inserted them. A crash between the fsync and
+ * the commit leaves a record without a marker whose balance update never committed; replay cannot
+ * tell it apart and inserts it.
+ */
+@Component
+@ConditionalOnProperty(name = "transaction.journal.enabled", havingValue = "true")
+@DependsOn("entityManagerFactory")
+public class TransactionJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionJournal.class);
+    private static final int READ_BUFFER_BYTES = 1 << 20;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+    private final Path journalPath;
+    private final Path checkpointPath;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long rotateBytes;
+    private final Timer lag;
+    private final AtomicLong pendingEntries = new AtomicLong();
+    // Locks rather than monitors, so a virtual thread waiting on a write or force does not pin
+    // its carrier
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock forceLock = new ReentrantLock();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, "transaction-journal-writer"));
+
+    private FileChannel channel;
+    // Guarded by writeLock
+    private long written;
+    // Guarded by forceLock; everything before it is on disk
+    private volatile long durable;
+    // Only moved by the writer thread; everything before it is in the database
+    private volatile long checkpoint;
+    // Set once a write or fsync fails; the journal then refuses further appends
+    private volatile IOException failure;
+    // Positions of the records whose transaction has not completed; the writer stops at the first
+    private final ConcurrentSkipListSet<Long> undecided = new ConcurrentSkipListSet<>();
+    // Tracking numbers of records whose transaction rolled back, which the writer skips
+    private final Set<String> aborted = ConcurrentHashMap.newKeySet();
+
+    public TransactionJournal(PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry, @Value("${transaction.journal.path}") String path,
+            @Value("${transaction.journal.batchSize}") int batchSize,
+            @Value("${transaction.journal.flushIntervalMs}") long flushIntervalMs,
+            @Value("${transaction.journal.rotateBytes}") long rotateBytes) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.journalPath = Paths.get(path);
+        this.checkpointPath = Paths.get(path + ".checkpoint");
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.rotateBytes = rotateBytes;
+        this.lag = Timer.builder("transaction.journal.lag")
+                .description("Time from journaling a transaction record to inserting it")
+                .register(meterRegistry);
+        Gauge.builder("transaction.journal.pending", pendingEntries, AtomicLong::get)
+                .description("Journaled transaction records not yet inserted")
+                .register(meterRegistry);
+        Gauge.builder("transaction.journal.pending.bytes", this,
+                journal -> journal.durable - journal.checkpoint)
+                .description("Journal bytes not yet inserted").register(meterRegistry);
+    }
+
+    // Opens the journal, drops a line torn by a crash and starts replaying from the checkpoint
+    @PostConstruct
+    void open() throws IOException {
+        if (journalPath.getParent() != null) {
+            Files.createDirectories(journalPath.getParent());
+        }
+        channel = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long start = readCheckpoint();
+        if (start > channel.size()) {
+            start = 0;
+        }
+
+        long end = start;
+        long lines = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        for (long position = start; position < channel.size(); ) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    end = position + i + 1;
+                    lines++;
+                }
+            }
+            position += read;
+        }
+        if (end < channel.size()) {
+            logger.warn("Discarding {} bytes of an incomplete journal entry",
+                    channel.size() - end);
+            channel.truncate(end);
+        }
+
+        long records = lines - readAbortMarkers(start, lines);
+        checkpoint = start;
+        written = end;
+        durable = end;
+        pendingEntries.set(records);
+        if (records > 0) {
+            logger.info("Replaying {} journaled transaction records", records);
+        }
+        writer.scheduleWithFixedDelay(this::drain, 0, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void close() throws Exception {
+        writer.shutdown();
+        writer.awaitTermination(30, TimeUnit.SECONDS);
+        drain();
+        channel.close();
+    }
+
+    // Journals the record right before the surrounding database transaction commits, failing the
+    // commit if it cannot be made durable
+    public void append(Transaction transaction) {
+        checkAvailable();
+        if (transaction.getTransactionDate() == null) {
+            transaction.setTransactionDate(LocalDate.now());
+        }
+        byte[] line = toLine(transaction);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            write(line, false);
+            return;
+        }
+        String trackingNumber = transaction.getTrackingNumber();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private long position = -1;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                position = write(line, true);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (position < 0) {
+                    return;
+                }
+                // A commit whose outcome is unknown keeps its record
+                if (status == STATUS_ROLLED_BACK) {
+                    abort(trackingNumber);
+                }
+                undecided.remove(position);
+            }
+        });
+    }
+
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    private void checkAvailable() {
+        if (failure != null) {
+            throw new IllegalStateException("The transaction journal is unavailable", failure);
+        }
+    }
+
+    // Marks the record as rolled back, in memory for the writer and on disk for replay
+    private void abort(String trackingNumber) {
+        aborted.add(trackingNumber);
+        ObjectNode marker = objectMapper.createObjectNode().put("aborted", trackingNumber);
+        try {
+            write((marker.toString() + "\n").getBytes(StandardCharsets.UTF_8), false);
+        } catch (RuntimeException e) {
+            logger.error("Could not journal the rollback of transaction record {}; it will be "
+                    + "replayed after a restart", trackingNumber, e);
+        }
+    }
+
+    // Appends the line, forces it to disk and returns its position. A record stays undecided, so
+    // the writer does not insert it, until its transaction completes.
+    private long write(byte[] line, boolean record) {
+        checkAvailable();
+        long start;
+        try {
+            long end;
+            writeLock.lock();
+            try {
+                start = written;
+                if (record) {
+                    undecided.add(start);
+                }
+                try {
+                    ByteBuffer buffer = ByteBuffer.wrap(line);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer, written + buffer.position());
+                    }
+                } catch (IOException e) {
+                    undecided.remove(start);
+                    throw e;
+                }
+                written += line.length;
+                end = written;
+            } finally {
+                writeLock.unlock();
+            }
+            if (record) {
+                pendingEntries.incrementAndGet();
+            }
+            // One force covers every line written before it started
+            forceLock.lock();
+            try {
+                if (durable < end) {
+                    long target;
+                    writeLock.lock();
+                    try {
+                        target = written;
+                    } finally {
+                        writeLock.unlock();
+                    }
+                    channel.force(false);
+                    durable = target;
+                }
+            } finally {
+                forceLock.unlock();
+            }
+        } catch (IOException e) {
+            failure = e;
+            logger.error("Could not journal {}; refusing further records until restart",
+                    new String(line, StandardCharsets.UTF_8).trim(), e);
+            throw new UncheckedIOException("Could not journal the transaction record", e);
+        }
+        return start;
+    }
+
+    private void drain() {
+        try {
+            while (flushBatch() > 0) {
+                // keep going until the durable part of the journal is in the database
+            }
+            rotateIfDrained();
+        } catch (Exception e) {
+            logger.error("Flushing the transaction journal failed, will retry", e);
+        }
+    }
+
+    private int flushBatch() throws IOException {
+        // Read durable first: a record is undecided before the force that covers it
+        long limit = durable;
+        Long firstUndecided = undecided.ceiling(Long.MIN_VALUE);
+        if (firstUndecided != null) {
+            limit = Math.min(limit, firstUndecided);
+        }
+        long available = Math.min(limit - checkpoint, READ_BUFFER_BYTES);
+        if (available <= 0) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) available);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, checkpoint + buffer.position()) < 0) {
+                break;
+            }
+        }
+
+        List<JsonNode> entries = new ArrayList<>();
+        int lines = 0;
+        int consumed = 0;
+        for (int i = 0; i < buffer.position() && lines < batchSize; i++) {
+            if (buffer.get(i) == '\n') {
+                JsonNode entry = objectMapper.readTree(new String(buffer.array(), consumed,
+                        i - consumed, StandardCharsets.UTF_8));
+                if (!entry.has("aborted")) {
+                    entries.add(entry);
+                }
+                lines++;
+                consumed = i + 1;
+            }
+        }
+        if (lines == 0) {
+            return 0;
+        }
+
+        List<JsonNode> committed = entries.stream()
+                .filter(entry -> !aborted.remove(entry.get("trackingNumber").asText()))
+                .collect(Collectors.toList());
+        if (!committed.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> insert(committed));
+        }
+        long now = System.currentTimeMillis();
+        committed.forEach(entry -> lag.record(now - entry.get("journaledAt").asLong(),
+                TimeUnit.MILLISECONDS));
+        checkpoint += consumed;
+        saveCheckpoint(checkpoint);
+        pendingEntries.addAndGet(-entries.size());
+        return lines;
+    }
+
+    private void insert(List<JsonNode> entries) {
+        Set<String> stored = new HashSet<>(transactionRepository.findExistingTrackingNumbers(
+                entries.stream().map(entry -> entry.get("trackingNumber").asText())
+                        .collect(Collectors.toList())));
+        Set<Long> users = new HashSet<>(customerRepository.findExistingIds(entries.stream()
+                .map(entry -> entry.get("userId").asLong()).collect(Collectors.toSet())));
+        for (JsonNode entry : entries) {
+            String trackingNumber = entry.get("trackingNumber").asText();
+            if (stored.contains(trackingNumber)) {
+                continue;
+            }
+            if (!users.contains(entry.get("userId").asLong())) {
+                logger.warn("Dropping journaled transaction {} of deleted user {}",
+                        trackingNumber, entry.get("userId").asLong());
+                continue;
+            }
+            entityManager.persist(toTransaction(entry));
+        }
+    }
+
+    // Starts the file over once everything in it has been inserted
+    private void rotateIfDrained() throws IOException {
+        forceLock.lock();
+        writeLock.lock();
+        try {
+            if (written == checkpoint && written >= rotateBytes) {
+                channel.truncate(0);
+                channel.force(true);
+                written = 0;
+                durable = 0;
+                checkpoint = 0;
+                saveCheckpoint(0);
+                // Every record has been read, so no marker is still waiting for its record
+                aborted.clear();
+            }
+        } finally {
+            writeLock.unlock();
+            forceLock.unlock();
+        }
+    }
+
+    // Collects the abort markers among the lines after the start and returns how many there are.
+    // A marker always follows its record, so every record to replay finds its marker here.
+    private long readAbortMarkers(long start, long lines) throws IOException {
+        long markers = 0;
+        try (InputStream in = Files.newInputStream(journalPath)) {
+            in.skipNBytes(start);
+            BufferedReader reader =
+                    new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            for (long i = 0; i < lines; i++) {
+                JsonNode entry = objectMapper.readTree(reader.readLine());
+                if (entry.has("aborted")) {
+                    aborted.add(entry.get("aborted").asText());
+                    markers++;
+                }
+            }
+        }
+        return markers;
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (!Files.exists(checkpointPath)) {
+            return 0;
+        }
+        return Long.parseLong(Files.readString(checkpointPath).trim());
+    }
+
+    private void saveCheckpoint(long position) throws IOException {
+        Path temporary = Paths.get(checkpointPath + ".tmp");
+        Files.writeString(temporary, Long.toString(position), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE,
+                StandardOpenOption.SYNC);
+        Files.move(temporary, checkpointPath, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private byte[] toLine(Transaction transaction) {
+        ObjectNode entry = objectMapper.createObjectNode();
+        entry.put("journaledAt", System.currentTimeMillis());
+        entry.put("userId", transaction.getUser().getId());
+        entry.put("trackingNumber", transaction.getTrackingNumber());
+        entry.put("transactionName", transaction.getTransactionName().name());
+        entry.put("transactionStatus", transaction.getTransactionStatus().name());
+        entry.put("amount", transaction.getAmount());
+        entry.put("transactionDate", transaction.getTransactionDate().toString());
+        entry.put("description", transaction.getDescription().name());
+        entry.put("withdrawalBalance", transaction.getWithdrawalBalance());
+        entry.put("transferReference", transaction.getTransferReference());
+        return (entry.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Transaction toTransaction(JsonNode entry) {
+        Transaction transaction = new Transaction();
+        transaction.setUser(
+                entityManager.getReference(Customer.class, entry.get("userId").asLong()));
+        transaction.setTrackingNumber(entry.get("trackingNumber").asText());
+        transaction.setTransactionName(
+                TransactionType.valueOf(entry.get("transactionName").asText()));
+        transaction.setTransactionStatus(
+                TransactionStatus.valueOf(entry.get("transactionStatus").asText()));
+        transaction.setAmount(entry.get("amount").asLong());
+        transaction.setTransactionDate(LocalDate.parse(entry.get("transactionDate").asText()));
+        transaction.setDescription(
+                TransactionDescription.valueOf(entry.get("description").asText()));
+        transaction.setWithdrawalBalance(entry.get("withdrawalBalance").asLong());
+        if (!entry.get("transferReference").isNull()) {
+            transaction.setTransferReference(entry.get("transferReference").asText());
+        }
+        return transaction;
+    }
+}
@@ -0,0 +1,83 @@
+package com.imansdev.ackownt.service;
+
+import com.imansdev.ackownt.repository.CustomerRepository;
+import com.imansdev.ackownt.repository.CustomerUniqueKeys;
+import jakarta.annotation.PostConstruct;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Bloom filters over the emails, phone numbers and national IDs of registered customers, so a
+ * registration whose values are all new skips the uniqueness query. They are built from the
+ * customer table on startup and sized for {@code uniqueKeyFilter.expectedCustomers}; values saved
+ * on this instance are added as they are saved.
+ *
+ * <p>A filter cannot forget, so deleted customers' values keep being checked against the database
+ * until the next restart. Customers registered on other instances are not in the filters at all;
+ * for those the unique constraints reject the insert, and the caller then runs the uniqueness
+ * query to report which value was taken.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class UniqueKeyFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(UniqueKeyFilter.class);
+
+    private final CustomerRepository customerRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BloomFilter emails;
+    private final BloomFilter phoneNumbers;
+    private final BloomFilter nationalIds;
+
+    public UniqueKeyFilter(CustomerRepository customerRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${uniqueKeyFilter.expectedCustomers}") int expectedCustomers) {
+        this.customerRepository = customerRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.emails = new BloomFilter(expectedCustomers);
+        this.phoneNumbers = new BloomFilter(expectedCustomers);
+        this.nationalIds = new BloomFilter(expectedCustomers);
+    }
+
+    @PostConstruct
+    void start() {
+        AtomicLong loaded = new AtomicLong();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<CustomerUniqueKeys> keys = customerRepository.streamUniqueKeys()) {
+                keys.forEach(key -> {
+                    add(key.getEmail(), key.getPhoneNumber(), key.getNationalId());
+                    loaded.incrementAndGet();
+                });
+            }
+        });
+        logger.info("Loaded the unique keys of {} customers", loaded.get());
+    }
+
+    // False only when none of the values can belong to a registered customer
+    public boolean mightExist(String email, String phoneNumber, String nationalId) {
+        return emails.mightContain(email) || phoneNumbers.mightContain(phoneNumber)
+                || nationalIds.mightContain(nationalId);
+    }
+
+    public boolean mightExistPhoneNumber(String phoneNumber) {
+        return phoneNumbers.mightContain(phoneNumber);
+    }
+
+    public void add(String email, String phoneNumber, String nationalId) {
+        emails.add(email);
+        phoneNumbers.add(phoneNumber);
+        nationalIds.add(nationalId);
+    }
+
+    public void addPhoneNumber(String phoneNumber) {
+        phoneNumbers.add(phoneNumber);
+    }
+}
@@ -0,0 +1,39 @@
+package com.imansdev.ackownt;
+
+import com.imansdev.ackownt.enums.Gender;
+import com.imansdev.ackownt.enums.MilitaryStatus;
+import com.imansdev.ackownt.model.Customer;
+import java.time.LocalDate;
+
+// Valid customers for tests that go through registration
+public final class TestCustomers {
+
+    public static final String PASSWORD = "password123";
+
+    private TestCustomers() {}
+
+    public static Customer newCustomer(int index) {
+        Customer customer = new Customer();
+        customer.setName("test");
+        customer.setSurname("user" + index);
+        customer.setNationalId(nationalId(index));
+        customer.setDateOfBirth(LocalDate.of(1990, 1, 1));
+        customer.setEmail("user" + index + "@example.com");
+        customer.setPhoneNumber(String.format("09%09d", index));
+        customer.setPassword(PASSWORD);
+        customer.setGender(Gender.FEMALE);
+        customer.setMilitaryStatus(MilitaryStatus.NONE);
+        return customer;
+    }
+
+    // Builds a national ID with a valid control digit from a 9 digit prefix
+    public static String nationalId(int index) {
+        String prefix = String.format("%09d", 100_000_000 + index);
+        int sum = 0;
+        for (int i = 0; i < 9; i++) {
+            sum += Character.getNumericValue(prefix.charAt(i)) * (10 - i);
+        }
+        int remainder = sum % 11;
+        return prefix + (remainder < 2 ? remainder : 11 - remainder);
+    }
+}
@@ -0,0 +1,120 @@
+package com.imansdev.ackownt.auth;
+
+import com.imansdev.ackownt.exception.OverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedBCryptPasswordEncoderTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private BoundedBCryptPasswordEncoder passwordEncoder;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // One hashing thread and room for one waiting hash
+        passwordEncoder = new BoundedBCryptPasswordEncoder(4, 1, 1, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        passwordEncoder.destroy();
+    }
+
+    @Test
+    void testEncodeAndMatches() {
+        String encoded = passwordEncoder.encode("Password123");
+        assertTrue(passwordEncoder.matches("Password123", encoded));
+        assertFalse(passwordEncoder.matches("Password321", encoded));
+    }
+
+    @Test
+    void testUpgradeEncoding_OtherStrength() {
+        String encoded = passwordEncoder.encode("Password123");
+        BoundedBCryptPasswordEncoder stronger = new BoundedBCryptPasswordEncoder(5, 1, 1,
+                meterRegistry);
+        try {
+            assertFalse(passwordEncoder.upgradeEncoding(encoded));
+            assertTrue(stronger.upgradeEncoding(encoded));
+            assertTrue(passwordEncoder.upgradeEncoding(stronger.encode("Password123")));
+            assertFalse(passwordEncoder.upgradeEncoding("notABCryptHash"));
+        } finally {
+            stronger.destroy();
+        }
+        assertEquals(1, meterRegistry.get("password.hashing.duration").tag("strength", "4")
+                .timer().count());
+        assertEquals(1, meterRegistry.get("password.hashing.duration").tag("strength", "5")
+                .timer().count());
+    }
+
+    @Test
+    void testCalibrate_NeverBelowMinimum() {
+        assertEquals(4, BoundedBCryptPasswordEncoder.calibrate(0, 4));
+        assertTrue(BoundedBCryptPasswordEncoder.calibrate(50, 4) >= 4);
+    }
+
+    @Test
+    void testMatches_RejectedWhenQueueIsFull() throws Exception {
+        String encoded = passwordEncoder.encode("Password123");
+        CountDownLatch hashing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // Holds the hashing thread until released; BCrypt reads the password through toString
+        CharSequence blocking = new BlockingPassword("Password123", hashing, release);
+
+        AtomicBoolean running = new AtomicBoolean();
+        AtomicBoolean queued = new AtomicBoolean();
+        Thread first = new Thread(() -> running.set(passwordEncoder.matches(blocking, encoded)));
+        first.start();
+        hashing.await();
+        Thread second = new Thread(() -> queued.set(passwordEncoder.matches("Password123", encoded)));
+        second.start();
+        while (second.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+
+        assertThrows(OverloadedException.class,
+                () -> passwordEncoder.matches("Password123", encoded));
+        assertEquals(1.0, meterRegistry.get("password.hashing.rejected").counter().count());
+
+        release.countDown();
+        first.join();
+        second.join();
+        assertTrue(running.get());
+        assertTrue(queued.get());
+    }
+
+    private record BlockingPassword(String password, CountDownLatch hashing,
+            CountDownLatch release) implements CharSequence {
+
+        @Override
+        public String toString() {
+            hashing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return password;
+        }
+
+        @Override
+        public int length() {
+            return password.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return password.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return password.subSequence(start, end);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.imansdev.ackownt.auth;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SignatureException;
+import java.util.Date;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilTest {
+
+    private static final String SECRET = "myTestSecretKey123!@#";
+
+    private final JwtUtil jwtUtil = new JwtUtil(SECRET, 60_000L, 100);
+
+    @Test
+    void testVerify_AcceptsTokensSignedWithTheStringSecret() {
+        String token = Jwts.builder().setSubject("imanabc@example.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(SignatureAlgorithm.HS512, SECRET).compact();
+
+        assertEquals("imanabc@example.com", jwtUtil.getEmailFromToken(token));
+        assertTrue(jwtUtil.validateToken(token, "imanabc@example.com"));
+        assertFalse(jwtUtil.validateToken(token, "other@example.com"));
+    }
+
+    @Test
+    void testVerify_RejectsTamperedTokenEvenAfterCaching() {
+        String token = jwtUtil.generateToken("imanabc@example.com");
+        assertEquals("imanabc@example.com", jwtUtil.verify(token).getEmail());
+
+        String tampered = token.substring(0, token.length() - 4)
+                + (token.endsWith("AAAA") ? "BBBB" : "AAAA");
+        assertThrows(SignatureException.class, () -> jwtUtil.verify(tampered));
+    }
+
+    @Test
+    void testVerify_RejectsExpiredToken() {
+        JwtUtil shortLived = new JwtUtil(SECRET, -1_000L, 100);
+        String token = shortLived.generateToken("imanabc@example.com");
+
+        assertThrows(ExpiredJwtException.class, () -> shortLived.verify(token));
+    }
+}
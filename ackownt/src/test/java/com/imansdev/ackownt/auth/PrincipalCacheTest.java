@@ -0,0 +1,73 @@
+package com.imansdev.ackownt.auth;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrincipalCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private PrincipalCache principalCache;
+    private AtomicInteger loads;
+    private Function<String, UserDetails> loader;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        principalCache = new PrincipalCache(meterRegistry, 60, 100);
+        loads = new AtomicInteger();
+        loader = email -> {
+            loads.incrementAndGet();
+            return new User(email, "encodedPassword", List.of());
+        };
+    }
+
+    @Test
+    void testGet_LoadsOnceUntilInvalidated() {
+        UserDetails principal = principalCache.get("imanabc@example.com", loader);
+        principalCache.get("imanabc@example.com", loader);
+        assertEquals(1, loads.get());
+        assertEquals("imanabc@example.com", principal.getUsername());
+        assertEquals("", principal.getPassword());
+
+        principalCache.invalidate("imanabc@example.com");
+        principalCache.get("imanabc@example.com", loader);
+        assertEquals(2, loads.get());
+
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "principals")
+                .tag("result", "hit").functionCounter().count());
+        assertEquals(2.0, meterRegistry.get("cache.gets").tag("cache", "principals")
+                .tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void testGet_LoadOverlappingInvalidationIsNotCached() {
+        // The customer changes while its old row is being read
+        principalCache.get("imanabc@example.com", email -> {
+            principalCache.invalidate(email);
+            return loader.apply(email);
+        });
+        principalCache.get("imanabc@example.com", loader);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testGet_FailedLoadIsNotCached() {
+        Function<String, UserDetails> missing = email -> {
+            loads.incrementAndGet();
+            throw new UsernameNotFoundException("User not found with email: " + email);
+        };
+        assertThrows(UsernameNotFoundException.class,
+                () -> principalCache.get("unknown@example.com", missing));
+        assertThrows(UsernameNotFoundException.class,
+                () -> principalCache.get("unknown@example.com", missing));
+        assertEquals(2, loads.get());
+    }
+}
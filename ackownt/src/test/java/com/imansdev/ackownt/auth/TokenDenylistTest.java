@@ -0,0 +1,111 @@
+package com.imansdev.ackownt.auth;
+
+import com.imansdev.ackownt.model.TokenRevocation;
+import com.imansdev.ackownt.repository.TokenRevocationRepository;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TokenDenylistTest {
+
+    private static final String SECRET = "myTestSecretKey123!@#";
+
+    private final JwtUtil jwtUtil = new JwtUtil(SECRET, 60_000L, 0);
+    private TokenRevocationRepository tokenRevocationRepository;
+    private TokenDenylist tokenDenylist;
+
+    @BeforeEach
+    void setUp() {
+        tokenRevocationRepository = mock(TokenRevocationRepository.class);
+        tokenDenylist = new TokenDenylist(tokenRevocationRepository, 60_000L, 1000, 60);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tokenDenylist.stop();
+    }
+
+    @Test
+    void testRevoke_OnlyThatToken() {
+        String token = jwtUtil.generateToken("imanabc@example.com");
+        // Expires later than the first token, so it is signed differently
+        String other = new JwtUtil(SECRET, 120_000L, 0).generateToken("imanabc@example.com");
+        tokenDenylist.start();
+
+        tokenDenylist.revoke(token, jwtUtil.verify(token));
+
+        assertTrue(tokenDenylist.isRevoked(token, jwtUtil.verify(token)));
+        assertFalse(tokenDenylist.isRevoked(other, jwtUtil.verify(other)));
+        verify(tokenRevocationRepository).save(any(TokenRevocation.class));
+    }
+
+    @Test
+    void testRevokeAll_TokensIssuedSoFar() {
+        String token = jwtUtil.generateToken("imanabc@example.com");
+        String other = jwtUtil.generateToken("other@example.com");
+        tokenDenylist.start();
+
+        tokenDenylist.revokeAll("imanabc@example.com");
+
+        assertTrue(tokenDenylist.isRevoked(token, jwtUtil.verify(token)));
+        assertFalse(tokenDenylist.isRevoked(other, jwtUtil.verify(other)));
+    }
+
+    @Test
+    void testRevokeAll_LoginRightAfterIsAccepted() throws Exception {
+        tokenDenylist.start();
+        tokenDenylist.revokeAll("imanabc@example.com");
+        Thread.sleep(2);
+
+        // Most likely within the same second as the cutoff
+        String token = jwtUtil.generateToken("imanabc@example.com");
+
+        assertFalse(tokenDenylist.isRevoked(token, jwtUtil.verify(token)));
+    }
+
+    @Test
+    void testRevokeAll_TokenWithoutMillisRefusedForWholeSecond() {
+        long now = System.currentTimeMillis();
+        // Issued before tokens carried their issue time in milliseconds
+        String token = Jwts.builder().setSubject("imanabc@example.com")
+                .setIssuedAt(new Date(now)).setExpiration(new Date(now + 60_000))
+                .signWith(SignatureAlgorithm.HS512, SECRET).compact();
+        when(tokenRevocationRepository.findByRevokedAtGreaterThanEqualAndExpiresAtAfter(any(),
+                any())).thenReturn(List.of(new TokenRevocation(null, "imanabc@example.com",
+                        Instant.ofEpochMilli(now / 1000 * 1000), Instant.ofEpochMilli(now + 60_000))));
+
+        tokenDenylist.start();
+
+        assertTrue(tokenDenylist.isRevoked(token, jwtUtil.verify(token)));
+    }
+
+    @Test
+    void testStart_LoadsStoredRevocations() {
+        String token = jwtUtil.generateToken("imanabc@example.com");
+        String signature = token.substring(token.lastIndexOf('.') + 1);
+        String earlier = jwtUtil.generateToken("other@example.com");
+        Instant now = Instant.now();
+        when(tokenRevocationRepository.findByRevokedAtGreaterThanEqualAndExpiresAtAfter(any(),
+                any())).thenReturn(List.of(
+                        new TokenRevocation(signature, "imanabc@example.com", now,
+                                now.plusSeconds(60)),
+                        new TokenRevocation(null, "other@example.com", now.plusSeconds(1),
+                                now.plusSeconds(60)),
+                        new TokenRevocation(null, "imanabc@example.com", now.minusSeconds(60),
+                                now.plusSeconds(60))));
+
+        tokenDenylist.start();
+
+        assertTrue(tokenDenylist.isRevoked(token, jwtUtil.verify(token)));
+        assertTrue(tokenDenylist.isRevoked(earlier, jwtUtil.verify(earlier)));
+        verify(tokenRevocationRepository).deleteExpired(any());
+    }
+}
@@ -0,0 +1,75 @@
+package com.imansdev.ackownt.benchmark;
+
+import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.repository.AccountRepository;
+import com.imansdev.ackownt.service.MainService;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Charges and deductions over a few accounts, through JPA and through the in-memory engine
+class AccountEngineBenchmark {
+
+    private static final int THREADS = 16;
+    private static final int ACCOUNTS = 8;
+    private static final long INITIAL_BALANCE = 1_000_000_000L;
+    private static final long AMOUNT = 1_000L;
+
+    @Test
+    void compareEngines() throws Exception {
+        List<BenchmarkSupport.Result> results = new ArrayList<>();
+        for (String engine : List.of("jpa", "memory")) {
+            results.add(runEngine(engine));
+        }
+        results.forEach(System.out::println);
+    }
+
+    private BenchmarkSupport.Result runEngine(String engine) throws Exception {
+        Path directory = Files.createTempDirectory("account-engine");
+        try (ConfigurableApplicationContext context = BenchmarkSupport.startContext(
+                "engine-" + engine, Map.of("account.engine", engine,
+                        "engine.directory", directory.toString()))) {
+            MainService mainService = context.getBean(MainService.class);
+            AccountRepository accountRepository = context.getBean(AccountRepository.class);
+
+            List<Customer> customers = new ArrayList<>();
+            for (int i = 0; i < ACCOUNTS; i++) {
+                Customer customer = BenchmarkSupport.newCustomer(i);
+                mainService.createUser(customer);
+                mainService.createAccount(customer.getEmail(), INITIAL_BALANCE);
+                customers.add(customer);
+            }
+
+            AtomicLong expectedDelta = new AtomicLong();
+            BenchmarkSupport.Result result = BenchmarkSupport.run(engine, THREADS,
+                    Duration.ofSeconds(2), Duration.ofSeconds(5), (thread, iteration) -> {
+                        String email = customers.get((int) ((thread + iteration) % ACCOUNTS))
+                                .getEmail();
+                        if (iteration % 2 == 0) {
+                            mainService.chargeAccount(email, AMOUNT);
+                            expectedDelta.addAndGet(AMOUNT);
+                        } else {
+                            mainService.deductAmount(email, AMOUNT);
+                            expectedDelta.addAndGet(-AMOUNT);
+                        }
+                    });
+
+            // The engine projects into the account table in the background
+            long expected = INITIAL_BALANCE * ACCOUNTS + expectedDelta.get();
+            long total = 0;
+            for (int attempt = 0; attempt < 300 && total != expected; attempt++) {
+                Thread.sleep(100);
+                total = accountRepository.findAll().stream().mapToLong(a -> a.getBalance()).sum();
+            }
+            assertEquals(expected, total, engine + " lost updates");
+            return result;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.imansdev.ackownt.benchmark;
+
+import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.repository.AccountRepository;
+import com.imansdev.ackownt.service.BalanceStrategy;
+import com.imansdev.ackownt.service.MainService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Charges and deductions from many threads against one hot account, once per balance strategy
+class BalanceStrategyBenchmark {
+
+    private static final int THREADS = 16;
+    private static final long INITIAL_BALANCE = 1_000_000_000L;
+    private static final long AMOUNT = 1_000L;
+
+    @Test
+    void compareStrategiesUnderContention() throws Exception {
+        List<BenchmarkSupport.Result> results = new ArrayList<>();
+        for (String strategy : List.of("conditional", "optimistic", "pessimistic", "ledger")) {
+            results.add(runStrategy(strategy));
+        }
+        results.forEach(System.out::println);
+    }
+
+    private BenchmarkSupport.Result runStrategy(String strategy) throws Exception {
+        try (ConfigurableApplicationContext context = BenchmarkSupport.startContext(
+                "balance-" + strategy, Map.of("account.balanceStrategy", strategy,
+                        "account.optimisticMaxRetries", "20",
+                        "ledger.snapshotIntervalSeconds", "1", "ledger.snapshotLagSeconds", "1"))) {
+            MainService mainService = context.getBean(MainService.class);
+            AccountRepository accountRepository = context.getBean(AccountRepository.class);
+
+            Customer customer = BenchmarkSupport.newCustomer(1);
+            mainService.createUser(customer);
+            mainService.createAccount(customer.getEmail(), INITIAL_BALANCE);
+
+            // Net effect of every operation that returned normally, warmup included
+            AtomicLong expectedDelta = new AtomicLong();
+            BenchmarkSupport.Result result = BenchmarkSupport.run(strategy, THREADS,
+                    Duration.ofSeconds(2), Duration.ofSeconds(5), (thread, iteration) -> {
+                        if ((thread + iteration) % 2 == 0) {
+                            mainService.chargeAccount(customer.getEmail(), AMOUNT);
+                            expectedDelta.addAndGet(AMOUNT);
+                        } else {
+                            mainService.deductAmount(customer.getEmail(), AMOUNT);
+                            expectedDelta.addAndGet(-AMOUNT);
+                        }
+                    });
+
+            long balance = context.getBean(BalanceStrategy.class).balance(
+                    accountRepository.findByUserId(customer.getId()).orElseThrow());
+            assertEquals(INITIAL_BALANCE + expectedDelta.get(), balance,
+                    strategy + " lost updates");
+            return result;
+        }
+    }
+}
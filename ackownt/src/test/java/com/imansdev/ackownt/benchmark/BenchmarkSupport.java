@@ -0,0 +1,172 @@
+package com.imansdev.ackownt.benchmark;
+
+import com.imansdev.ackownt.AckowntApplication;
+import com.imansdev.ackownt.TestCustomers;
+import com.imansdev.ackownt.enums.Gender;
+import com.imansdev.ackownt.enums.MilitaryStatus;
+import com.imansdev.ackownt.model.Customer;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+// Shared helpers for the contention benchmarks. They are run with: mvn -Pbenchmark test
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {}
+
+    @FunctionalInterface
+    interface Operation {
+        void run(int thread, long iteration) throws Exception;
+    }
+
+    static final class Result {
+        final String name;
+        final long operations;
+        final long errors;
+        final double throughput;
+        final double p50Micros;
+        final double p99Micros;
+
+        Result(String name, long operations, long errors, double throughput, double p50Micros,
+                double p99Micros) {
+            this.name = name;
+            this.operations = operations;
+            this.errors = errors;
+            this.throughput = throughput;
+            this.p50Micros = p50Micros;
+            this.p99Micros = p99Micros;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-28s ops=%-9d errors=%-7d throughput=%10.1f ops/s p50=%9.1f us p99=%9.1f us",
+                    name, operations, errors, throughput, p50Micros, p99Micros);
+        }
+    }
+
+    // Boots the application against a private in-memory H2 database
+    static ConfigurableApplicationContext startContext(String name, Map<String, Object> overrides) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.datasource.url", "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        properties.put("spring.jpa.properties.hibernate.show_sql", "false");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.com.imansdev.ackownt.aspect", "WARN");
+        properties.put("logging.level.org.springframework.web", "WARN");
+        properties.put("account.minWithdrawal", "0");
+        properties.put("account.maxWithdrawal", String.valueOf(Long.MAX_VALUE / 4));
+        properties.putAll(overrides);
+        // Passed as arguments so they take precedence over application.properties
+        String[] args = properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(AckowntApplication.class)
+                .web(WebApplicationType.NONE).run(args);
+    }
+
+    static Customer newCustomer(int index) {
+        Customer customer = new Customer();
+        customer.setName("bench");
+        customer.setSurname("user" + index);
+        customer.setNationalId(nationalId(index));
+        customer.setDateOfBirth(LocalDate.of(1990, 1, 1));
+        customer.setEmail("bench" + index + "@example.com");
+        customer.setPhoneNumber(String.format("09%09d", index));
+        customer.setPassword("password123");
+        customer.setGender(Gender.FEMALE);
+        customer.setMilitaryStatus(MilitaryStatus.NONE);
+        return customer;
+    }
+
+    static String nationalId(int index) {
+        return TestCustomers.nationalId(index);
+    }
+
+    static Result run(String name, int threads, Duration warmup, Duration measure,
+            Operation operation) throws InterruptedException {
+        return run(name, threads, Thread::new, warmup, measure, operation);
+    }
+
+    static Result run(String name, int threads, ThreadFactory threadFactory, Duration warmup,
+            Duration measure, Operation operation) throws InterruptedException {
+        AtomicBoolean recording = new AtomicBoolean(false);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong errors = new AtomicLong();
+        long[][] latencies = new long[threads][];
+        int[] counts = new int[threads];
+        CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            latencies[t] = new long[1 << 12];
+            Thread worker = threadFactory.newThread(() -> {
+                long iteration = 0;
+                while (running.get()) {
+                    long start = System.nanoTime();
+                    boolean failed = false;
+                    try {
+                        operation.run(thread, iteration++);
+                    } catch (Exception e) {
+                        failed = true;
+                    }
+                    long elapsed = System.nanoTime() - start;
+                    if (recording.get()) {
+                        if (failed) {
+                            errors.incrementAndGet();
+                        }
+                        if (counts[thread] == latencies[thread].length) {
+                            latencies[thread] = Arrays.copyOf(latencies[thread],
+                                    latencies[thread].length * 2);
+                        }
+                        latencies[thread][counts[thread]++] = elapsed;
+                    }
+                }
+                done.countDown();
+            });
+            worker.setName(name + "-" + t);
+            worker.start();
+        }
+
+        Thread.sleep(warmup.toMillis());
+        recording.set(true);
+        long start = System.nanoTime();
+        Thread.sleep(measure.toMillis());
+        recording.set(false);
+        long elapsed = System.nanoTime() - start;
+        running.set(false);
+        done.await();
+
+        int total = Arrays.stream(counts).sum();
+        long[] all = new long[total];
+        int offset = 0;
+        for (int t = 0; t < threads; t++) {
+            System.arraycopy(latencies[t], 0, all, offset, counts[t]);
+            offset += counts[t];
+        }
+        Arrays.sort(all);
+        return new Result(name, total, errors.get(), total / (elapsed / 1e9),
+                percentile(all, 0.50) / 1e3, percentile(all, 0.99) / 1e3);
+    }
+
+    // Thread.ofVirtual().factory(), looked up reflectively since the build targets Java 17
+    static ThreadFactory virtualThreadFactory() throws ReflectiveOperationException {
+        Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+        return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory")
+                .invoke(builder);
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+}
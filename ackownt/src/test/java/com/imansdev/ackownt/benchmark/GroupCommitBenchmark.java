@@ -0,0 +1,67 @@
+package com.imansdev.ackownt.benchmark;
+
+import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.repository.AccountRepository;
+import com.imansdev.ackownt.service.MainService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Charges and deductions over a few accounts, with one transaction each and with group commit
+class GroupCommitBenchmark {
+
+    private static final int THREADS = 16;
+    private static final int ACCOUNTS = 8;
+    private static final long INITIAL_BALANCE = 1_000_000_000L;
+    private static final long AMOUNT = 1_000L;
+
+    @Test
+    void compareCommitModes() throws Exception {
+        List<BenchmarkSupport.Result> results = new ArrayList<>();
+        for (boolean groupCommit : List.of(false, true)) {
+            results.add(runMode(groupCommit));
+        }
+        results.forEach(System.out::println);
+    }
+
+    private BenchmarkSupport.Result runMode(boolean groupCommit) throws Exception {
+        String mode = groupCommit ? "group-commit" : "per-operation";
+        try (ConfigurableApplicationContext context = BenchmarkSupport.startContext(mode,
+                Map.of("groupCommit.enabled", groupCommit))) {
+            MainService mainService = context.getBean(MainService.class);
+            AccountRepository accountRepository = context.getBean(AccountRepository.class);
+
+            List<Customer> customers = new ArrayList<>();
+            for (int i = 0; i < ACCOUNTS; i++) {
+                Customer customer = BenchmarkSupport.newCustomer(i);
+                mainService.createUser(customer);
+                mainService.createAccount(customer.getEmail(), INITIAL_BALANCE);
+                customers.add(customer);
+            }
+
+            AtomicLong expectedDelta = new AtomicLong();
+            BenchmarkSupport.Result result = BenchmarkSupport.run(mode, THREADS,
+                    Duration.ofSeconds(2), Duration.ofSeconds(5), (thread, iteration) -> {
+                        String email = customers.get((int) ((thread + iteration) % ACCOUNTS))
+                                .getEmail();
+                        if (iteration % 2 == 0) {
+                            mainService.chargeAccount(email, AMOUNT);
+                            expectedDelta.addAndGet(AMOUNT);
+                        } else {
+                            mainService.deductAmount(email, AMOUNT);
+                            expectedDelta.addAndGet(-AMOUNT);
+                        }
+                    });
+
+            long total = accountRepository.findAll().stream().mapToLong(a -> a.getBalance()).sum();
+            assertEquals(INITIAL_BALANCE * ACCOUNTS + expectedDelta.get(), total,
+                    mode + " lost updates");
+            return result;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.imansdev.ackownt.benchmark;
+
+import com.imansdev.ackownt.dto.SettlementLineDTO;
+import com.imansdev.ackownt.dto.SettlementReportDTO;
+import com.imansdev.ackownt.enums.TransactionType;
+import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.repository.AccountRepository;
+import com.imansdev.ackownt.repository.TransactionRepository;
+import com.imansdev.ackownt.service.MainService;
+import com.imansdev.ackownt.service.SettlementService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Transaction inserts per second through bulk settlement, with and without JDBC batching
+class InsertBatchingBenchmark {
+
+    private static final int ACCOUNTS = 20;
+    private static final int LINES = 2_000;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 10;
+
+    @Test
+    void settlementInserts() throws Exception {
+        List<String> results = new ArrayList<>();
+        for (int batchSize : new int[] {1, 50}) {
+            results.add(runBatchSize(batchSize));
+        }
+        results.forEach(System.out::println);
+    }
+
+    private String runBatchSize(int batchSize) throws Exception {
+        try (ConfigurableApplicationContext context = BenchmarkSupport.startContext(
+                "inserts-" + batchSize,
+                Map.of("spring.jpa.properties.hibernate.jdbc.batch_size", batchSize))) {
+            MainService mainService = context.getBean(MainService.class);
+            SettlementService settlementService = context.getBean(SettlementService.class);
+            AccountRepository accountRepository = context.getBean(AccountRepository.class);
+            TransactionRepository transactionRepository =
+                    context.getBean(TransactionRepository.class);
+
+            List<String> accountNumbers = new ArrayList<>();
+            for (int i = 0; i < ACCOUNTS; i++) {
+                Customer customer = BenchmarkSupport.newCustomer(i);
+                mainService.createUser(customer);
+                mainService.createAccount(customer.getEmail(), 1_000_000L);
+                accountNumbers.add(accountRepository.findByUserId(customer.getId()).orElseThrow()
+                        .getAccountNumber());
+            }
+            List<SettlementLineDTO> lines = new ArrayList<>();
+            for (int i = 0; i < LINES; i++) {
+                lines.add(new SettlementLineDTO(accountNumbers.get(i % ACCOUNTS),
+                        TransactionType.CHARGE, 1_000L));
+            }
+
+            for (int round = 0; round < WARMUP_ROUNDS; round++) {
+                settlementService.settle(lines);
+            }
+            long start = System.nanoTime();
+            for (int round = 0; round < ROUNDS; round++) {
+                SettlementReportDTO report = settlementService.settle(lines);
+                assertEquals(LINES, report.getSucceeded());
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            // One opening charge per account plus every settled line
+            assertEquals(ACCOUNTS + (long) LINES * (WARMUP_ROUNDS + ROUNDS),
+                    transactionRepository.count());
+            return String.format("%-28s rows=%-9d inserts=%10.1f rows/s", "batch_size=" + batchSize,
+                    (long) LINES * ROUNDS, LINES * ROUNDS / seconds);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.imansdev.ackownt.benchmark;
+
+import com.imansdev.ackownt.auth.JwtAuthorizationFilter;
+import com.imansdev.ackownt.auth.JwtUtil;
+import com.imansdev.ackownt.auth.PrincipalCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.util.ReflectionTestUtils;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Authorizes requests carrying a few reused tokens through the JWT filter, with every token
+// verified from scratch and with the verified-token cache. Principals are cached in both runs, so
+// the difference is the token check alone.
+class JwtFilterBenchmark {
+
+    private static final int THREADS = 4;
+    private static final int USERS = 64;
+
+    @Test
+    void compareTokenVerification() throws Exception {
+        List<BenchmarkSupport.Result> results = new ArrayList<>();
+        for (long cacheEntries : List.of(0L, 10_000L)) {
+            results.add(runFilter(cacheEntries));
+        }
+        results.forEach(System.out::println);
+    }
+
+    private BenchmarkSupport.Result runFilter(long cacheEntries) throws Exception {
+        String mode = cacheEntries > 0 ? "verified-cache" : "verify-each";
+        JwtUtil jwtUtil = new JwtUtil("myTestSecretKey123!@#", 36_000_000L, cacheEntries);
+        UserDetailsService userDetailsService =
+                email -> new User(email, "encodedPassword", List.of());
+        JwtAuthorizationFilter filter = new JwtAuthorizationFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(filter, "userDetailsService", userDetailsService);
+        ReflectionTestUtils.setField(filter, "principalCache",
+                new PrincipalCache(new SimpleMeterRegistry(), 60, 10_000));
+
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            tokens.add(jwtUtil.generateToken("bench" + i + "@example.com"));
+        }
+
+        BenchmarkSupport.Result result = BenchmarkSupport.run(mode, THREADS,
+                Duration.ofSeconds(2), Duration.ofSeconds(5), (thread, iteration) -> {
+                    int user = (int) ((thread * 7 + iteration) % USERS);
+                    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/account");
+                    request.addHeader("Authorization", "Bearer " + tokens.get(user));
+                    SecurityContextHolder.clearContext();
+                    filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+                    String name = SecurityContextHolder.getContext().getAuthentication().getName();
+                    if (!name.equals("bench" + user + "@example.com")) {
+                        throw new IllegalStateException("Authorized as " + name);
+                    }
+                });
+        assertEquals(0, result.errors, mode + " failed to authorize requests");
+        return result;
+    }
+}
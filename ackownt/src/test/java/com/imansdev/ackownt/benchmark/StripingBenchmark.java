@@ -0,0 +1,71 @@
+package com.imansdev.ackownt.benchmark;
+
+import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.repository.AccountRepository;
+import com.imansdev.ackownt.repository.AccountStripeRepository;
+import com.imansdev.ackownt.service.MainService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Mostly charges with some deductions against one hot account, with and without striping
+class StripingBenchmark {
+
+    private static final int THREADS = 16;
+    private static final long INITIAL_BALANCE = 1_000_000_000L;
+    private static final long AMOUNT = 1_000L;
+
+    @Test
+    void compareStriping() throws Exception {
+        List<BenchmarkSupport.Result> results = new ArrayList<>();
+        for (boolean striping : List.of(false, true)) {
+            results.add(runMode(striping));
+        }
+        results.forEach(System.out::println);
+    }
+
+    private BenchmarkSupport.Result runMode(boolean striping) throws Exception {
+        String mode = striping ? "striped" : "single-row";
+        Customer customer = BenchmarkSupport.newCustomer(1);
+        String accountNumber;
+        // The account has to exist before startup to be listed for striping
+        try (ConfigurableApplicationContext context = BenchmarkSupport.startContext(mode,
+                Map.of())) {
+            MainService mainService = context.getBean(MainService.class);
+            mainService.createUser(customer);
+            mainService.createAccount(customer.getEmail(), INITIAL_BALANCE);
+            accountNumber = context.getBean(AccountRepository.class)
+                    .findByUserId(customer.getId()).orElseThrow().getAccountNumber();
+        }
+
+        try (ConfigurableApplicationContext context = BenchmarkSupport.startContext(mode,
+                Map.of("account.striping.enabled", striping,
+                        "account.striping.accounts", accountNumber))) {
+            MainService mainService = context.getBean(MainService.class);
+
+            AtomicLong expectedDelta = new AtomicLong();
+            BenchmarkSupport.Result result = BenchmarkSupport.run(mode, THREADS,
+                    Duration.ofSeconds(2), Duration.ofSeconds(5), (thread, iteration) -> {
+                        if ((thread + iteration) % 8 != 0) {
+                            mainService.chargeAccount(customer.getEmail(), AMOUNT);
+                            expectedDelta.addAndGet(AMOUNT);
+                        } else {
+                            mainService.deductAmount(customer.getEmail(), AMOUNT);
+                            expectedDelta.addAndGet(-AMOUNT);
+                        }
+                    });
+
+            long accountId = context.getBean(AccountRepository.class)
+                    .findByUserId(customer.getId()).orElseThrow().getId();
+            long balance = context.getBean(AccountStripeRepository.class).findTotal(accountId)
+                    .orElseThrow();
+            assertEquals(INITIAL_BALANCE + expectedDelta.get(), balance, mode + " lost updates");
+            return result;
+        }
+    }
+}
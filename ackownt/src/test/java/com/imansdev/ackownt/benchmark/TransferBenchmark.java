@@ -0,0 +1,67 @@
+package com.imansdev.ackownt.benchmark;
+
+import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.repository.AccountRepository;
+import com.imansdev.ackownt.service.BalanceStrategy;
+import com.imansdev.ackownt.service.MainService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Transfers in both directions between a few hot accounts, once per balance strategy
+class TransferBenchmark {
+
+    private static final int THREADS = 16;
+    private static final int ACCOUNTS = 4;
+    private static final long INITIAL_BALANCE = 1_000_000_000L;
+    private static final long AMOUNT = 1_000L;
+
+    @Test
+    void transfersBetweenHotAccounts() throws Exception {
+        List<BenchmarkSupport.Result> results = new ArrayList<>();
+        for (String strategy : List.of("conditional", "optimistic", "pessimistic", "ledger")) {
+            results.add(runStrategy(strategy));
+        }
+        results.forEach(System.out::println);
+    }
+
+    private BenchmarkSupport.Result runStrategy(String strategy) throws Exception {
+        try (ConfigurableApplicationContext context = BenchmarkSupport.startContext(
+                "transfer-" + strategy, Map.of("account.balanceStrategy", strategy,
+                        "account.optimisticMaxRetries", "20",
+                        "ledger.snapshotIntervalSeconds", "1", "ledger.snapshotLagSeconds", "1"))) {
+            MainService mainService = context.getBean(MainService.class);
+            AccountRepository accountRepository = context.getBean(AccountRepository.class);
+
+            List<Customer> customers = new ArrayList<>();
+            List<String> accountNumbers = new ArrayList<>();
+            for (int i = 0; i < ACCOUNTS; i++) {
+                Customer customer = BenchmarkSupport.newCustomer(i);
+                mainService.createUser(customer);
+                mainService.createAccount(customer.getEmail(), INITIAL_BALANCE);
+                customers.add(customer);
+                accountNumbers.add(accountRepository.findByUserId(customer.getId()).orElseThrow()
+                        .getAccountNumber());
+            }
+
+            // Every pair is exercised in both directions at the same time
+            BenchmarkSupport.Result result = BenchmarkSupport.run("transfer-" + strategy, THREADS,
+                    Duration.ofSeconds(2), Duration.ofSeconds(5), (thread, iteration) -> {
+                        int from = (int) ((thread + iteration) % ACCOUNTS);
+                        int to = (from + 1 + thread % (ACCOUNTS - 1)) % ACCOUNTS;
+                        mainService.transfer(customers.get(from).getEmail(),
+                                accountNumbers.get(to), AMOUNT);
+                    });
+
+            BalanceStrategy balanceStrategy = context.getBean(BalanceStrategy.class);
+            long total = accountRepository.findAll().stream().mapToLong(balanceStrategy::balance)
+                    .sum();
+            assertEquals(INITIAL_BALANCE * ACCOUNTS, total, strategy + " did not conserve money");
+            return result;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.imansdev.ackownt.benchmark;
+
+import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.service.MainService;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadFactory;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Reads and charges from many concurrent callers on platform threads and on virtual threads,
+// recording where virtual threads get pinned to their carrier. Needs Java 21 or later.
+class VirtualThreadBenchmark {
+
+    private static final int CALLERS = 1_000;
+    private static final int ACCOUNTS = 50;
+    private static final String APPLICATION_PACKAGE = "com.imansdev.ackownt.";
+
+    @Test
+    void compareThreadModes() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "Virtual threads need Java 21 or later");
+
+        List<BenchmarkSupport.Result> results = new ArrayList<>();
+        results.add(runMode("platform-threads", Thread::new, false));
+        Path recording = Files.createTempFile("virtual-threads", ".jfr");
+        try (Recording pinning = new Recording()) {
+            pinning.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO)
+                    .withStackTrace();
+            pinning.start();
+            results.add(runMode("virtual-threads", BenchmarkSupport.virtualThreadFactory(), true));
+            pinning.stop();
+            pinning.dump(recording);
+        }
+        results.forEach(System.out::println);
+
+        // Pinning in the JDBC driver or the pool is only reported; in our own code it fails
+        Map<String, Integer> pinnedAt = new TreeMap<>();
+        int pinnedInApplication = 0;
+        for (RecordedEvent event : RecordingFile.readAllEvents(recording)) {
+            String frame = innermostFrame(event);
+            pinnedAt.merge(frame, 1, Integer::sum);
+            if (frame.startsWith(APPLICATION_PACKAGE)) {
+                pinnedInApplication++;
+            }
+        }
+        Files.delete(recording);
+        pinnedAt.forEach((frame, count) -> System.out.println("pinned " + count + "x at " + frame));
+        assertEquals(0, pinnedInApplication, "Virtual threads pinned in application code");
+    }
+
+    private BenchmarkSupport.Result runMode(String mode, ThreadFactory threadFactory,
+            boolean virtual) throws Exception {
+        try (ConfigurableApplicationContext context = BenchmarkSupport.startContext(mode,
+                Map.of("spring.threads.virtual.enabled", virtual))) {
+            MainService mainService = context.getBean(MainService.class);
+
+            List<Customer> customers = new ArrayList<>();
+            for (int i = 0; i < ACCOUNTS; i++) {
+                Customer customer = BenchmarkSupport.newCustomer(i);
+                mainService.createUser(customer);
+                mainService.createAccount(customer.getEmail(), 1_000_000_000L);
+                customers.add(customer);
+            }
+
+            BenchmarkSupport.Result result = BenchmarkSupport.run(mode, CALLERS, threadFactory,
+                    Duration.ofSeconds(2), Duration.ofSeconds(5), (thread, iteration) -> {
+                        String email = customers.get((int) ((thread + iteration) % ACCOUNTS))
+                                .getEmail();
+                        if (iteration % 4 == 0) {
+                            mainService.chargeAccount(email, 1_000L);
+                        } else {
+                            mainService.getUserInfo(email);
+                        }
+                    });
+            assertEquals(0, result.errors, mode + " had failed operations");
+            return result;
+        }
+    }
+
+    // The innermost frame outside the JDK, which is where the blocking call was made
+    private static String innermostFrame(RecordedEvent event) {
+        if (event.getStackTrace() != null) {
+            for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+                String type = frame.getMethod().getType().getName();
+                if (!type.startsWith("java.") && !type.startsWith("jdk.")
+                        && !type.startsWith("sun.")) {
+                    return type + "." + frame.getMethod().getName();
+                }
+            }
+        }
+        return "unknown";
+    }
+}
@@ -0,0 +1,69 @@
+package com.imansdev.ackownt.config;
+
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicaRoutingDataSourceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate writeTransaction;
+    private TransactionTemplate readOnlyTransaction;
+
+    @BeforeEach
+    void setUp() {
+        // Two separate local H2 databases, each telling which one it is
+        DataSource primary = database("primary");
+        DataSource replica = database("replica");
+        DataSource dataSource = new LazyConnectionDataSourceProxy(
+                new ReplicaRoutingDataSource(primary, replica));
+        DataSourceTransactionManager transactionManager =
+                new DataSourceTransactionManager(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        writeTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReplicaRoutingDataSource.requirePrimary(false);
+    }
+
+    @Test
+    void testReadOnlyTransaction_UsesReplica() {
+        assertEquals("replica", readOnlyTransaction.execute(status -> role()));
+        assertEquals("primary", writeTransaction.execute(status -> role()));
+        assertEquals("primary", role());
+    }
+
+    @Test
+    void testReadOnlyTransaction_PrimaryRequired() {
+        ReplicaRoutingDataSource.requirePrimary(true);
+        assertEquals("primary", readOnlyTransaction.execute(status -> role()));
+
+        ReplicaRoutingDataSource.requirePrimary(false);
+        assertEquals("replica", readOnlyTransaction.execute(status -> role()));
+    }
+
+    private String role() {
+        return jdbcTemplate.queryForObject("SELECT name FROM role", String.class);
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS role (name VARCHAR(16))");
+        jdbcTemplate.update("DELETE FROM role");
+        jdbcTemplate.update("INSERT INTO role VALUES (?)", name);
+        return dataSource;
+    }
+}
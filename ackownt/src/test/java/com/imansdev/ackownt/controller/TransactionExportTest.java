@@ -0,0 +1,82 @@
+package com.imansdev.ackownt.controller;
+
+import com.imansdev.ackownt.TestCustomers;
+import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.repository.CustomerRepository;
+import com.imansdev.ackownt.service.MainService;
+import io.restassured.RestAssured;
+import io.restassured.response.Response;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class TransactionExportTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MainService mainService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        RestAssured.port = port;
+        Customer customer = TestCustomers.newCustomer(1);
+        if (!customerRepository.findByEmail(customer.getEmail()).isPresent()) {
+            mainService.createUser(customer);
+            mainService.createAccount(customer.getEmail(), 1_000_000L);
+            mainService.chargeAccount(customer.getEmail(), 500_000L);
+        }
+        token = mainService.generateToken(customer.getEmail(), TestCustomers.PASSWORD);
+    }
+
+    @Test
+    void testExport_Plain() {
+        Response response = RestAssured.given().auth().oauth2(token)
+                .get("/api/v1/account/transaction/export");
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.contentType().startsWith("application/x-ndjson"));
+        assertNull(response.header("Content-Encoding"));
+        assertExported(response.asString());
+    }
+
+    @Test
+    void testExport_Gzip() {
+        // RestAssured decompresses the body, so this checks both the encoding and the content
+        Response response = RestAssured.given().auth().oauth2(token).queryParam("gzip", true)
+                .get("/api/v1/account/transaction/export");
+
+        assertEquals(200, response.statusCode());
+        assertEquals("gzip", response.header("Content-Encoding"));
+        assertExported(response.asString());
+    }
+
+    @Test
+    void testExport_RequiresToken() {
+        Response response = RestAssured.get("/api/v1/account/transaction/export");
+
+        assertEquals(403, response.statusCode());
+    }
+
+    // The opening deposit and the charge, oldest first, one JSON object per line
+    private static void assertExported(String body) {
+        List<String> lines = body.lines().toList();
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains("\"amount\":1000000"));
+        assertTrue(lines.get(1).contains("\"transactionName\":\"CHARGE\""));
+        assertTrue(lines.get(1).contains("\"amount\":500000"));
+    }
+}
@@ -0,0 +1,92 @@
+package com.imansdev.ackownt.service;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountEngineLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRecover_ReturnsRunAfterSnapshot() throws Exception {
+        Path path = directory.resolve("partition-0.log");
+        try (AccountEngineLog log = new AccountEngineLog(path, 4)) {
+            log.recover(0);
+            log.append(AccountEngineRecordTest.record(1));
+            log.append(AccountEngineRecordTest.record(2));
+            log.force();
+        }
+
+        try (AccountEngineLog log = new AccountEngineLog(path, 4)) {
+            assertEquals(List.of(1L, 2L), seqs(log.recover(0)));
+            // Appends continue after the recovered run
+            assertEquals(2, log.remaining());
+        }
+    }
+
+    @Test
+    void testRecover_StopsAtStaleRecordsAfterReset() throws Exception {
+        Path path = directory.resolve("partition-0.log");
+        try (AccountEngineLog log = new AccountEngineLog(path, 4)) {
+            log.recover(0);
+            for (long seq = 1; seq <= 3; seq++) {
+                log.append(AccountEngineRecordTest.record(seq));
+            }
+            log.force();
+            // Checkpointed at 3, then one more record over the first slot
+            log.reset();
+            log.append(AccountEngineRecordTest.record(4));
+            log.force();
+        }
+
+        try (AccountEngineLog log = new AccountEngineLog(path, 4)) {
+            assertEquals(List.of(4L), seqs(log.recover(3)));
+        }
+    }
+
+    @Test
+    void testRecover_DropsRunNotFollowingSnapshot() throws Exception {
+        Path path = directory.resolve("partition-0.log");
+        try (AccountEngineLog log = new AccountEngineLog(path, 4)) {
+            log.recover(0);
+            log.append(AccountEngineRecordTest.record(1));
+            log.append(AccountEngineRecordTest.record(2));
+            log.force();
+        }
+
+        // The snapshot already covers both records, and the log was not reset before the crash
+        try (AccountEngineLog log = new AccountEngineLog(path, 4)) {
+            assertTrue(log.recover(2).isEmpty());
+            assertEquals(4, log.remaining());
+        }
+    }
+
+    @Test
+    void testRecover_StopsAtTornRecord() throws Exception {
+        Path path = directory.resolve("partition-0.log");
+        try (AccountEngineLog log = new AccountEngineLog(path, 4)) {
+            log.recover(0);
+            for (long seq = 1; seq <= 3; seq++) {
+                log.append(AccountEngineRecordTest.record(seq));
+            }
+            log.force();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(AccountEngineRecord.BYTES + 30);
+            file.write(0xFF);
+        }
+
+        try (AccountEngineLog log = new AccountEngineLog(path, 4)) {
+            assertEquals(List.of(1L), seqs(log.recover(0)));
+        }
+    }
+
+    private static List<Long> seqs(List<AccountEngineRecord> records) {
+        return records.stream().map(record -> record.seq).toList();
+    }
+}
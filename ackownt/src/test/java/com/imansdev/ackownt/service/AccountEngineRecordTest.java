@@ -0,0 +1,47 @@
+package com.imansdev.ackownt.service;
+
+import com.imansdev.ackownt.enums.TransactionType;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountEngineRecordTest {
+
+    @Test
+    void testRead_ReturnsWrittenRecord() {
+        ByteBuffer buffer = ByteBuffer.allocate(AccountEngineRecord.BYTES * 2);
+        record(7).write(buffer, AccountEngineRecord.BYTES);
+
+        AccountEngineRecord read = AccountEngineRecord.read(buffer, AccountEngineRecord.BYTES);
+
+        assertEquals(7, read.seq);
+        assertEquals(TransactionType.DEDUCTION, read.type);
+        assertEquals(3, read.userId);
+        assertEquals(200_000, read.amount);
+        assertEquals(800_000, read.balance);
+        assertEquals(200_000, read.dailyTotal);
+        assertEquals(LocalDate.of(2024, 10, 20), read.date);
+        assertEquals("000000000007", read.trackingNumber);
+    }
+
+    @Test
+    void testRead_ZeroedSlotIsNotARecord() {
+        assertNull(AccountEngineRecord.read(ByteBuffer.allocate(AccountEngineRecord.BYTES), 0));
+    }
+
+    @Test
+    void testRead_TornSlotIsNotARecord() {
+        ByteBuffer buffer = ByteBuffer.allocate(AccountEngineRecord.BYTES);
+        record(7).write(buffer, 0);
+        // A crash that persisted only part of the slot
+        buffer.putLong(25, 0L);
+
+        assertNull(AccountEngineRecord.read(buffer, 0));
+    }
+
+    static AccountEngineRecord record(long seq) {
+        return new AccountEngineRecord(seq, TransactionType.DEDUCTION, 3, 200_000, 800_000,
+                200_000, LocalDate.of(2024, 10, 20), String.format("%012d", seq));
+    }
+}
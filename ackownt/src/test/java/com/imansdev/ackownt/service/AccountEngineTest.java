@@ -0,0 +1,154 @@
+package com.imansdev.ackownt.service;
+
+import com.imansdev.ackownt.model.Account;
+import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.model.Transaction;
+import com.imansdev.ackownt.repository.AccountBalanceView;
+import com.imansdev.ackownt.repository.AccountRepository;
+import com.imansdev.ackownt.repository.CustomerRepository;
+import com.imansdev.ackownt.repository.DailyDeductionRepository;
+import com.imansdev.ackownt.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AccountEngineTest {
+
+    @TempDir
+    Path directory;
+
+    private AccountRepository accountRepository;
+    private CustomerRepository customerRepository;
+    private TransactionRepository transactionRepository;
+    private IdGenerator idGenerator;
+    private EntityManager entityManager;
+    private final List<AccountEngine> engines = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        accountRepository = mock(AccountRepository.class);
+        customerRepository = mock(CustomerRepository.class);
+        transactionRepository = mock(TransactionRepository.class);
+        idGenerator = mock(IdGenerator.class);
+        entityManager = mock(EntityManager.class);
+        AccountBalanceView account = mock(AccountBalanceView.class);
+        when(account.getBalance()).thenReturn(1_000_000L);
+        when(accountRepository.findBalanceByUserId(any())).thenReturn(Optional.of(account));
+        when(customerRepository.findExistingIds(anyCollection())).thenReturn(List.of(1L, 2L));
+        AtomicLong trackingNumbers = new AtomicLong();
+        when(idGenerator.nextTrackingNumber())
+                .thenAnswer(invocation -> String.format("%012d", trackingNumbers.incrementAndGet()));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (AccountEngine engine : engines) {
+            engine.stop();
+        }
+    }
+
+    @Test
+    void testCharge_LoadFailureFailsOnlyThatCommand() throws Exception {
+        AccountEngine engine = newEngine(directory, 100);
+        AccountBalanceView account = mock(AccountBalanceView.class);
+        when(account.getBalance()).thenReturn(500_000L);
+        when(accountRepository.findBalanceByUserId(2L))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"))
+                .thenReturn(Optional.of(account));
+
+        assertThrows(DataAccessResourceFailureException.class, () -> engine.charge(2L, 100L));
+
+        // The partition keeps going, and the user is loaded again on the next command
+        engine.charge(1L, 100L);
+        assertEquals(1_000_100, engine.balance(account(1L)));
+        engine.charge(2L, 100L);
+        assertEquals(500_100, engine.balance(account(2L)));
+    }
+
+    @Test
+    void testDeduct_TrackingNumberFailureLeavesStateUnchanged() throws Exception {
+        AccountEngine engine = newEngine(directory, 100);
+        engine.charge(1L, 100L);
+        when(idGenerator.nextTrackingNumber())
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"))
+                .thenReturn("000000000099");
+
+        assertThrows(DataAccessResourceFailureException.class, () -> engine.deduct(1L, 50_000L));
+
+        assertEquals(1_000_100, engine.balance(account(1L)));
+        engine.deduct(1L, 50_000L);
+        assertEquals(950_100, engine.balance(account(1L)));
+    }
+
+    @Test
+    void testStart_ReplaysRecordsLoggedAfterCheckpoint() throws Exception {
+        AccountEngine engine = newEngine(directory, 2);
+        engine.charge(1L, 100L);
+        engine.charge(1L, 200L);
+        // The log is full, so this one checkpoints first and is logged over the first slot
+        engine.charge(1L, 300L);
+
+        // Copies the files as a crash would leave them, before the engine shuts down cleanly
+        Path crashed = Files.createDirectory(directory.resolve("crashed"));
+        for (String file : List.of("partition-0.log", "partition-0.snapshot")) {
+            Files.copy(directory.resolve(file), crashed.resolve(file));
+        }
+        engine.stop();
+        engines.remove(engine);
+        clearInvocations(entityManager, accountRepository);
+        AccountEngine restarted = newEngine(crashed, 2);
+
+        assertEquals(1_000_600, restarted.balance(account(1L)));
+        verify(accountRepository, never()).findBalanceByUserId(any());
+        // Only the record after the snapshot is projected again
+        restarted.stop();
+        engines.remove(restarted);
+        ArgumentCaptor<Transaction> projected = ArgumentCaptor.forClass(Transaction.class);
+        verify(entityManager).persist(projected.capture());
+        assertEquals("000000000003", projected.getValue().getTrackingNumber());
+    }
+
+    private AccountEngine newEngine(Path directory, int logRecords) throws Exception {
+        AccountEngine engine = new AccountEngine(mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), 1, directory.toString(), logRecords, 1);
+        ReflectionTestUtils.setField(engine, "accountRepository", accountRepository);
+        ReflectionTestUtils.setField(engine, "customerRepository", customerRepository);
+        ReflectionTestUtils.setField(engine, "dailyDeductionRepository",
+                mock(DailyDeductionRepository.class));
+        ReflectionTestUtils.setField(engine, "transactionRepository", transactionRepository);
+        ReflectionTestUtils.setField(engine, "idGenerator", idGenerator);
+        ReflectionTestUtils.setField(engine, "jdbcTemplate", mock(JdbcTemplate.class));
+        ReflectionTestUtils.setField(engine, "entityManager", entityManager);
+        ReflectionTestUtils.setField(engine, "minBalance", 10_000L);
+        ReflectionTestUtils.setField(engine, "maxWithdrawal", 10_000_000L);
+        ReflectionTestUtils.setField(engine, "balanceStrategy", "conditional");
+        engine.start();
+        engines.add(engine);
+        return engine;
+    }
+
+    private static Account account(Long userId) {
+        Customer customer = new Customer();
+        ReflectionTestUtils.setField(customer, "id", userId);
+        Account account = new Account();
+        account.setUser(customer);
+        return account;
+    }
+}
@@ -0,0 +1,67 @@
+package com.imansdev.ackownt.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountIdCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AccountIdCache accountIdCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        accountIdCache = new AccountIdCache(meterRegistry, 60, 100);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void testGet_LoadsOnceUntilInvalidated() {
+        Function<Long, Optional<Long>> loader = userId -> {
+            loads.incrementAndGet();
+            return Optional.of(userId + 100);
+        };
+        assertEquals(Optional.of(107L), accountIdCache.get(7L, loader));
+        assertEquals(Optional.of(107L), accountIdCache.get(7L, loader));
+        assertEquals(1, loads.get());
+
+        accountIdCache.invalidate(7L);
+        accountIdCache.get(7L, loader);
+        assertEquals(2, loads.get());
+
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "accountIds")
+                .tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void testGet_LoadOverlappingInvalidationIsNotCached() {
+        Function<Long, Optional<Long>> loader = userId -> {
+            loads.incrementAndGet();
+            return Optional.of(userId + 100);
+        };
+        // The user is deleted while its account id is being read
+        accountIdCache.get(7L, userId -> {
+            accountIdCache.invalidate(userId);
+            return loader.apply(userId);
+        });
+        accountIdCache.get(7L, loader);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testGet_MissingAccountIsNotCached() {
+        Function<Long, Optional<Long>> missing = userId -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        };
+        assertEquals(Optional.empty(), accountIdCache.get(7L, missing));
+        assertEquals(Optional.empty(), accountIdCache.get(7L, missing));
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,176 @@
+package com.imansdev.ackownt.service;
+
+import com.imansdev.ackownt.TestCustomers;
+import com.imansdev.ackownt.model.Account;
+import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.repository.AccountRepository;
+import com.imansdev.ackownt.repository.CustomerRepository;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"account.striping.enabled=true", "account.striping.stripes=4"})
+@ActiveProfiles("test")
+class AccountStripesTest {
+
+    private static final AtomicInteger customers = new AtomicInteger(700);
+
+    @Autowired
+    private AccountStripes accountStripes;
+    @Autowired
+    private MainService mainService;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // The bean behind the transactional proxy, whose configuration the tests change
+    private AccountStripes target;
+    private Account account;
+
+    @BeforeEach
+    void setUp() {
+        target = AopTestUtils.getTargetObject(accountStripes);
+        Customer customer = TestCustomers.newCustomer(customers.incrementAndGet());
+        mainService.createUser(customer);
+        mainService.createAccount(customer.getEmail(), 1_000_000L);
+        Long userId = customerRepository.findByEmail(customer.getEmail()).orElseThrow().getId();
+        account = accountRepository.findByUserId(userId).orElseThrow();
+        restripe(Set.of(account.getAccountNumber()), 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        restripe(Set.of(), 4);
+    }
+
+    @Test
+    void testDebit_SkipsStripesBeingCredited() throws Exception {
+        setColumn(100_000);
+        setStripe(0, 300_000);
+        setStripe(1, 600_000);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> credit = holdStripe(1, release);
+        long balance;
+        try {
+            balance = accountStripes.debit(account.getUser().getId(), 350_000, 10_000);
+        } finally {
+            release.countDown();
+            credit.get(10, TimeUnit.SECONDS);
+        }
+
+        assertEquals(650_000, balance);
+        assertEquals(50_000, column());
+        assertEquals(List.of(0L, 600_000L, 0L, 0L), stripes());
+    }
+
+    @Test
+    void testDebit_WaitsForCreditWhenIdleStripesFallShort() throws Exception {
+        setColumn(100_000);
+        setStripe(0, 300_000);
+        setStripe(1, 600_000);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> credit = holdStripe(1, release);
+        CompletableFuture<Long> debit = CompletableFuture.supplyAsync(
+                () -> accountStripes.debit(account.getUser().getId(), 450_000, 10_000));
+        try {
+            // Merging only stripe 0 would take the column below the minimum
+            Thread.sleep(300);
+            assertFalse(debit.isDone());
+        } finally {
+            release.countDown();
+        }
+        credit.get(10, TimeUnit.SECONDS);
+
+        assertEquals(550_000, debit.get(10, TimeUnit.SECONDS));
+        assertEquals(550_000, column());
+        assertEquals(List.of(0L, 0L, 0L, 0L), stripes());
+    }
+
+    @Test
+    void testStart_FoldsStripesOfUnlistedAccount() {
+        setStripe(0, 200_000);
+        setStripe(3, 300_000);
+
+        restripe(Set.of(), 4);
+
+        assertFalse(accountStripes.isStriped(account.getUser().getId()));
+        assertEquals(1_500_000, column());
+        assertEquals(List.of(), stripes());
+    }
+
+    @Test
+    void testStart_FoldsStripesBeyondNewCount() {
+        setStripe(0, 200_000);
+        setStripe(3, 300_000);
+
+        restripe(Set.of(account.getAccountNumber()), 2);
+
+        assertEquals(1_300_000, column());
+        assertEquals(List.of(200_000L, 0L), stripes());
+    }
+
+    // Keeps a credit's lock on the stripe until released
+    private CompletableFuture<Void> holdStripe(int stripe, CountDownLatch release)
+            throws InterruptedException {
+        CountDownLatch locked = new CountDownLatch(1);
+        CompletableFuture<Void> credit = CompletableFuture.runAsync(
+                () -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    jdbcTemplate.update("UPDATE account_stripe SET amount = amount + 0 "
+                            + "WHERE account_id = ? AND stripe = ?", account.getId(), stripe);
+                    locked.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+        return credit;
+    }
+
+    private void restripe(Set<String> accountNumbers, int stripes) {
+        ReflectionTestUtils.setField(target, "accountNumbers", accountNumbers);
+        ReflectionTestUtils.setField(target, "stripes", stripes);
+        target.start();
+    }
+
+    private void setColumn(long balance) {
+        jdbcTemplate.update("UPDATE account SET balance = ? WHERE id = ?", balance,
+                account.getId());
+    }
+
+    private void setStripe(int stripe, long amount) {
+        jdbcTemplate.update("UPDATE account_stripe SET amount = ? WHERE account_id = ? "
+                + "AND stripe = ?", amount, account.getId(), stripe);
+    }
+
+    private long column() {
+        return jdbcTemplate.queryForObject("SELECT balance FROM account WHERE id = ?",
+                Long.class, account.getId());
+    }
+
+    private List<Long> stripes() {
+        return jdbcTemplate.queryForList("SELECT amount FROM account_stripe "
+                + "WHERE account_id = ? ORDER BY stripe", Long.class, account.getId());
+    }
+}
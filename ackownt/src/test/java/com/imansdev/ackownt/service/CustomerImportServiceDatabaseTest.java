@@ -0,0 +1,200 @@
+package com.imansdev.ackownt.service;
+
+import com.imansdev.ackownt.TestCustomers;
+import com.imansdev.ackownt.dto.CustomerImportReportDTO;
+import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.repository.CustomerRepository;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class CustomerImportServiceDatabaseTest {
+
+    private static final String HEADER =
+            String.join(",", CustomerImportService.CSV_COLUMNS) + "\n";
+    // Customers and imports of this class, apart from those of other tests sharing the database
+    private static final AtomicInteger customers = new AtomicInteger(900);
+    private static final AtomicInteger imports = new AtomicInteger();
+
+    @Autowired
+    private CustomerImportService customerImportService;
+    @Autowired
+    private MainService mainService;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // The bean behind the transactional proxy, whose settings some tests change
+    private CustomerImportService target;
+
+    @BeforeEach
+    void setUp() {
+        target = AopTestUtils.getTargetObject(customerImportService);
+    }
+
+    @Test
+    void testImportCustomers_RejectsLinesBreakingConstraints() throws Exception {
+        int valid = customers.incrementAndGet();
+        String importId = nextImportId();
+
+        CustomerImportReportDTO report = importCsv(importId, line(valid)
+                + "test,user,0000000000,1990-01-01,FEMALE,not-an-email,0912,NONE,secret\n"
+                + "test,user\n"
+                + line(customers.incrementAndGet()).replace("1990-01-01", "yesterday"));
+
+        assertTrue(report.isCompleted());
+        assertEquals(1, report.getImported());
+        assertEquals(3, report.getRejected());
+        List<String> rejections = rejections(importId);
+        assertEquals(3, rejections.size());
+        assertTrue(rejections.get(0).startsWith("{\"line\":3,"), rejections.get(0));
+        assertTrue(rejections.get(0).contains("Invalid email format"), rejections.get(0));
+        assertTrue(rejections.get(0).contains("Phone number must be exactly 11 digits"),
+                rejections.get(0));
+        assertEquals("{\"line\":4,\"error\":\"Expected 9 columns but found 2\"}",
+                rejections.get(1));
+        assertEquals("{\"line\":5,\"error\":\"Invalid value for dateOfBirth\"}",
+                rejections.get(2));
+        assertTrue(customerRepository.findByEmail(email(valid)).isPresent());
+    }
+
+    @Test
+    void testImportCustomers_RejectsDuplicatesWithinBatch() throws Exception {
+        int first = customers.incrementAndGet();
+        int second = customers.incrementAndGet();
+        String importId = nextImportId();
+
+        CustomerImportReportDTO report = importCsv(importId, line(first) + line(first)
+                + line(second).replace(phoneNumber(second), phoneNumber(first)));
+
+        assertEquals(1, report.getImported());
+        assertEquals(List.of("{\"line\":3,\"error\":\"Email must be unique\"}",
+                "{\"line\":4,\"error\":\"Phone number must be unique\"}"), rejections(importId));
+    }
+
+    @Test
+    void testImportCustomers_RejectsValuesTakenInDatabase() throws Exception {
+        int registered = customers.incrementAndGet();
+        mainService.createUser(TestCustomers.newCustomer(registered));
+        int imported = customers.incrementAndGet();
+        String importId = nextImportId();
+
+        CustomerImportReportDTO report = importCsv(importId, line(imported)
+                + line(customers.incrementAndGet()).replace(
+                        TestCustomers.nationalId(customers.get()),
+                        TestCustomers.nationalId(registered)));
+
+        assertEquals(1, report.getImported());
+        assertEquals(List.of("{\"line\":3,\"error\":\"National ID must be unique\"}"),
+                rejections(importId));
+    }
+
+    @Test
+    void testImportCustomers_ResumesAfterPartialUpload() throws Exception {
+        int batchSize = (int) ReflectionTestUtils.getField(target, "batchSize");
+        ReflectionTestUtils.setField(target, "batchSize", 2);
+        try {
+            String lines = line(customers.incrementAndGet()) + line(customers.incrementAndGet());
+            String rest = line(customers.incrementAndGet()) + line(customers.incrementAndGet());
+            String importId = nextImportId();
+
+            // The connection drops after the first batch has committed
+            InputStream dropped = new SequenceInputStream(
+                    new ByteArrayInputStream((HEADER + lines).getBytes(StandardCharsets.UTF_8)),
+                    new InputStream() {
+                        @Override
+                        public int read() throws IOException {
+                            throw new IOException("Connection reset");
+                        }
+                    });
+            assertThrows(IOException.class,
+                    () -> customerImportService.importCustomers(importId, true, dropped));
+            CustomerImportReportDTO partial = customerImportService.getReport(importId);
+            assertFalse(partial.isCompleted());
+            assertEquals(2, partial.getImported());
+
+            CustomerImportReportDTO report = importCsv(importId, lines + rest);
+
+            assertTrue(report.isCompleted());
+            assertEquals(5, report.getLinesDone());
+            assertEquals(4, report.getImported());
+            assertEquals(0, report.getRejected());
+        } finally {
+            ReflectionTestUtils.setField(target, "batchSize", batchSize);
+        }
+    }
+
+    @Test
+    void testImportCustomers_RetriesBatchWhenInsertHitsTakenValue() throws Exception {
+        int registered = customers.incrementAndGet();
+        mainService.createUser(TestCustomers.newCustomer(registered));
+        int imported = customers.incrementAndGet();
+        String importId = nextImportId();
+        // As if the customer had registered on another instance, so the filter has not seen it
+        UniqueKeyFilter uniqueKeyFilter =
+                (UniqueKeyFilter) ReflectionTestUtils.getField(target, "uniqueKeyFilter");
+        ReflectionTestUtils.setField(target, "uniqueKeyFilter",
+                new UniqueKeyFilter(customerRepository, transactionManager, 1000));
+        CustomerImportReportDTO report;
+        try {
+            report = importCsv(importId, line(imported) + line(customers.incrementAndGet())
+                    .replace(email(customers.get()), email(registered)));
+        } finally {
+            ReflectionTestUtils.setField(target, "uniqueKeyFilter", uniqueKeyFilter);
+        }
+
+        assertEquals(1, report.getImported());
+        assertEquals(List.of("{\"line\":3,\"error\":\"Email must be unique\"}"),
+                rejections(importId));
+        assertTrue(customerRepository.findByEmail(email(imported)).isPresent());
+    }
+
+    private CustomerImportReportDTO importCsv(String importId, String lines) throws IOException {
+        return customerImportService.importCustomers(importId, true,
+                new ByteArrayInputStream((HEADER + lines).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private List<String> rejections(String importId) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        customerImportService.exportRejections(importId, out);
+        return out.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+
+    private static String nextImportId() {
+        return "import-test-" + imports.incrementAndGet();
+    }
+
+    // A CSV line with the columns in header order
+    private static String line(int index) {
+        Customer customer = TestCustomers.newCustomer(index);
+        return String.join(",", customer.getName(), customer.getSurname(),
+                customer.getNationalId(), customer.getDateOfBirth().toString(),
+                customer.getGender().toString(), customer.getEmail(), customer.getPhoneNumber(),
+                customer.getMilitaryStatus().toString(), TestCustomers.PASSWORD) + "\n";
+    }
+
+    private static String email(int index) {
+        return TestCustomers.newCustomer(index).getEmail();
+    }
+
+    private static String phoneNumber(int index) {
+        return TestCustomers.newCustomer(index).getPhoneNumber();
+    }
+}
@@ -0,0 +1,79 @@
+package com.imansdev.ackownt.service;
+
+import com.imansdev.ackownt.dto.CustomerImportReportDTO;
+import com.imansdev.ackownt.model.CustomerImport;
+import com.imansdev.ackownt.repository.CustomerImportRepository;
+import jakarta.validation.ValidationException;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CustomerImportServiceTest {
+
+    private CustomerImportService customerImportService;
+    private CustomerImportRepository customerImportRepository;
+
+    @BeforeEach
+    void setUp() {
+        customerImportService =
+                new CustomerImportService(mock(PlatformTransactionManager.class));
+        customerImportRepository = mock(CustomerImportRepository.class);
+        ReflectionTestUtils.setField(customerImportService, "customerImportRepository",
+                customerImportRepository);
+        ReflectionTestUtils.setField(customerImportService, "batchSize", 500);
+    }
+
+    @Test
+    void testParseCsvLine_QuotedValues() {
+        assertEquals(List.of("Iman", "Smith, Jr", "say \"hi\"", ""),
+                CustomerImportService.parseCsvLine("Iman,\"Smith, Jr\", \"say \"\"hi\"\"\","));
+        assertEquals(List.of(""), CustomerImportService.parseCsvLine(""));
+    }
+
+    @Test
+    void testImportCustomers_CompletedImportSkipsUpload() throws Exception {
+        CustomerImport completed = new CustomerImport("import-1");
+        completed.advance(12, 10, 2, true);
+        when(customerImportRepository.findById("import-1")).thenReturn(Optional.of(completed));
+        InputStream upload = mock(InputStream.class);
+
+        CustomerImportReportDTO report =
+                customerImportService.importCustomers("import-1", true, upload);
+
+        assertTrue(report.isCompleted());
+        assertEquals(10, report.getImported());
+        assertEquals(2, report.getRejected());
+        verifyNoInteractions(upload);
+    }
+
+    @Test
+    void testImportCustomers_CsvHeaderMissingColumns() {
+        when(customerImportRepository.findById("import-1"))
+                .thenReturn(Optional.of(new CustomerImport("import-1")));
+        InputStream upload = new ByteArrayInputStream(
+                "name,surname,email\n".getBytes(StandardCharsets.UTF_8));
+
+        ValidationException exception = assertThrows(ValidationException.class,
+                () -> customerImportService.importCustomers("import-1", true, upload));
+        assertTrue(exception.getMessage().startsWith("The CSV header must name the columns"));
+    }
+
+    @Test
+    void testImportCustomers_UploadShorterThanCheckpoint() {
+        CustomerImport checkpoint = new CustomerImport("import-1");
+        checkpoint.advance(5, 4, 0, false);
+        when(customerImportRepository.findById("import-1")).thenReturn(Optional.of(checkpoint));
+        InputStream upload = new ByteArrayInputStream("{}\n{}\n".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(ValidationException.class,
+                () -> customerImportService.importCustomers("import-1", false, upload));
+    }
+}
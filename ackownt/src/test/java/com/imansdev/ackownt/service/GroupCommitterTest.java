@@ -0,0 +1,161 @@
+package com.imansdev.ackownt.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import jakarta.validation.ValidationException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class GroupCommitterTest {
+
+    private PlatformTransactionManager transactionManager;
+    private EntityManager entityManager;
+    private GroupCommitter groupCommitter;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any()))
+                .thenAnswer(invocation -> new SimpleTransactionStatus());
+        entityManager = mock(EntityManager.class);
+        groupCommitter = newGroupCommitter(transactionManager);
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        executor.shutdownNow();
+        groupCommitter.stop();
+    }
+
+    @Test
+    void testSubmit_SharesOneCommit() throws Exception {
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int value = i;
+            results.add(executor.submit(() -> groupCommitter.submit(value, () -> value)));
+        }
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, results.get(i).get(10, TimeUnit.SECONDS));
+        }
+        verify(transactionManager, times(1)).getTransaction(any());
+    }
+
+    @Test
+    void testSubmit_FailureDoesNotAffectOthers() throws Exception {
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int value = i;
+            results.add(executor.submit(() -> groupCommitter.submit(value, () -> {
+                if (value == 1) {
+                    throw new ValidationException("Insufficient balance");
+                }
+                return "ok-" + value;
+            })));
+        }
+        assertEquals("ok-0", results.get(0).get(10, TimeUnit.SECONDS));
+        Exception exception = assertThrows(Exception.class,
+                () -> results.get(1).get(10, TimeUnit.SECONDS));
+        assertInstanceOf(ValidationException.class, exception.getCause());
+        assertEquals("ok-2", results.get(2).get(10, TimeUnit.SECONDS));
+        assertEquals("ok-3", results.get(3).get(10, TimeUnit.SECONDS));
+        // Rolled back once, then applied again without the failing operation
+        verify(transactionManager, times(2)).getTransaction(any());
+    }
+
+    @Test
+    void testSubmit_FlushFailureRetriesOneByOne() throws Exception {
+        PersistenceException violation = new PersistenceException("Unique index violated");
+        // The batch's flush fails, then only the second operation's own flush does
+        doThrow(violation).doNothing().doThrow(violation).doNothing().when(entityManager).flush();
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int value = i;
+            results.add(executor.submit(() -> groupCommitter.submit(value, () -> "ok-" + value)));
+        }
+        assertEquals("ok-0", results.get(0).get(10, TimeUnit.SECONDS));
+        Exception exception = assertThrows(Exception.class,
+                () -> results.get(1).get(10, TimeUnit.SECONDS));
+        assertSame(violation, exception.getCause());
+        assertEquals("ok-2", results.get(2).get(10, TimeUnit.SECONDS));
+        assertEquals("ok-3", results.get(3).get(10, TimeUnit.SECONDS));
+        verify(transactionManager, times(5)).getTransaction(any());
+    }
+
+    @Test
+    void testSubmit_FailureAfterCommitIsNotRerun() throws Exception {
+        groupCommitter.stop();
+        groupCommitter = newGroupCommitter(new NoOpTransactionManager());
+        AtomicInteger applied = new AtomicInteger();
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int value = i;
+            results.add(executor.submit(() -> groupCommitter.submit(value, () -> {
+                if (value == 0) {
+                    TransactionSynchronizationManager.registerSynchronization(
+                            new TransactionSynchronization() {
+                                @Override
+                                public void afterCommit() {
+                                    throw new IllegalStateException("Journal write failed");
+                                }
+                            });
+                }
+                return applied.incrementAndGet();
+            })));
+        }
+        for (Future<Integer> result : results) {
+            Exception exception = assertThrows(Exception.class,
+                    () -> result.get(10, TimeUnit.SECONDS));
+            assertEquals("Journal write failed", exception.getCause().getMessage());
+        }
+        // The batch had already committed, so no operation ran a second time
+        assertEquals(4, applied.get());
+    }
+
+    private GroupCommitter newGroupCommitter(PlatformTransactionManager transactionManager) {
+        // A window long enough for every submission in a test to land in one batch
+        GroupCommitter groupCommitter = new GroupCommitter(transactionManager,
+                new SimpleMeterRegistry(), 1_000_000, 4);
+        ReflectionTestUtils.setField(groupCommitter, "entityManager", entityManager);
+        groupCommitter.start();
+        return groupCommitter;
+    }
+
+    // Runs transaction synchronizations like a real transaction manager, without a resource
+    private static final class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {}
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {}
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {}
+    }
+}
@@ -0,0 +1,57 @@
+package com.imansdev.ackownt.service;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class IdGeneratorTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private IdGenerator idGenerator;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        AtomicLong sequence = new AtomicLong(1 - IdGenerator.BLOCK_SIZE);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class)))
+                .thenAnswer(invocation -> sequence.addAndGet(IdGenerator.BLOCK_SIZE));
+        idGenerator = new IdGenerator(jdbcTemplate);
+    }
+
+    @Test
+    void testNextTrackingNumber_UniqueAcrossThreads() throws Exception {
+        Set<String> numbers = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.submit(() -> {
+                for (int i = 0; i < 2500; i++) {
+                    numbers.add(idGenerator.nextTrackingNumber());
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(20000, numbers.size());
+        assertTrue(numbers.stream().allMatch(number -> number.matches("\\d{12}")));
+        // One database call per block, not per number
+        verify(jdbcTemplate, times(20)).queryForObject(anyString(), eq(Long.class));
+    }
+
+    @Test
+    void testFormat_ScramblesConsecutiveValues() {
+        assertNotEquals(IdGenerator.format(1), IdGenerator.format(2));
+        assertEquals(12, IdGenerator.format(999_999_999_999L).length());
+        assertThrows(IllegalStateException.class, () -> IdGenerator.format(1_000_000_000_000L));
+    }
+}
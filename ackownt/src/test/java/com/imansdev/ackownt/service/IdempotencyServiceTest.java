@@ -0,0 +1,116 @@
+package com.imansdev.ackownt.service;
+
+import jakarta.validation.ValidationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyServiceTest {
+
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(60, 100);
+    }
+
+    @Test
+    void testExecute_ReplaysCompletedResult() {
+        AtomicInteger calls = new AtomicInteger();
+
+        String first = idempotencyService.execute("imanabc@example.com", "key-1", "charge:100",
+                () -> "result-" + calls.incrementAndGet());
+        String second = idempotencyService.execute("imanabc@example.com", "key-1", "charge:100",
+                () -> "result-" + calls.incrementAndGet());
+
+        assertEquals("result-1", first);
+        assertEquals("result-1", second);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testExecute_KeysAreScopedPerUser() {
+        AtomicInteger calls = new AtomicInteger();
+
+        idempotencyService.execute("a@example.com", "key-1", "charge:100", calls::incrementAndGet);
+        idempotencyService.execute("b@example.com", "key-1", "charge:100", calls::incrementAndGet);
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testExecute_KeyReusedForDifferentRequest() {
+        idempotencyService.execute("imanabc@example.com", "key-1", "charge:100", () -> "done");
+
+        ValidationException exception = assertThrows(ValidationException.class, () -> {
+            idempotencyService.execute("imanabc@example.com", "key-1", "charge:200", () -> "done");
+        });
+
+        assertTrue(exception.getMessage().contains("different request"));
+    }
+
+    @Test
+    void testExecute_DigestsOfCollidingHashCodesDiffer() {
+        // Lines whose joined descriptions share a String.hashCode
+        String first = "0123456789/CHARGE/Aa";
+        String second = "0123456789/CHARGE/BB";
+        assertEquals(first.hashCode(), second.hashCode());
+        idempotencyService.execute("imanabc@example.com", "key-1",
+                "settlement:" + IdempotencyService.digest(first), () -> "done");
+
+        assertThrows(ValidationException.class, () -> {
+            idempotencyService.execute("imanabc@example.com", "key-1",
+                    "settlement:" + IdempotencyService.digest(second), () -> "done");
+        });
+    }
+
+    @Test
+    void testExecute_FailureIsNotStored() {
+        assertThrows(ValidationException.class, () -> {
+            idempotencyService.execute("imanabc@example.com", "key-1", "charge:100", () -> {
+                throw new ValidationException("Insufficient balance for this deduction");
+            });
+        });
+
+        assertEquals("done", idempotencyService.execute("imanabc@example.com", "key-1",
+                "charge:100", () -> "done"));
+    }
+
+    @Test
+    void testExecute_ConcurrentDuplicateWaitsForFirstCall() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> idempotencyService
+                .execute("imanabc@example.com", "key-1", "charge:100", () -> {
+                    calls.incrementAndGet();
+                    started.countDown();
+                    await(release);
+                    return "result";
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> duplicate = CompletableFuture.supplyAsync(() -> idempotencyService
+                .execute("imanabc@example.com", "key-1", "charge:100", () -> {
+                    calls.incrementAndGet();
+                    return "duplicate";
+                }));
+        release.countDown();
+
+        assertEquals("result", first.get(5, TimeUnit.SECONDS));
+        assertEquals("result", duplicate.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.imansdev.ackownt.service;
+
+import com.imansdev.ackownt.TestCustomers;
+import com.imansdev.ackownt.dto.TransactionDTO;
+import com.imansdev.ackownt.exception.OverloadedException;
+import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.repository.AccountRepository;
+import com.imansdev.ackownt.repository.CustomerRepository;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"account.balanceStrategy=ledger", "ledger.snapshotLagSeconds=2"})
+@ActiveProfiles("test")
+class LedgerTest {
+
+    private static final AtomicInteger customers = new AtomicInteger(600);
+
+    @Autowired
+    private Ledger ledger;
+    @Autowired
+    private MainService mainService;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void testOpenExistingAccounts_MigratesBalanceColumn() {
+        long accountId = openAccount(1_000_000);
+        // As if the account predated ledger mode
+        jdbcTemplate.update("DELETE FROM ledger_posting WHERE entry_reference = ?",
+                "opening-" + accountId);
+        jdbcTemplate.update("UPDATE account SET balance = 750000 WHERE id = ?", accountId);
+
+        assertTrue(ledger.openExistingAccounts() >= 1);
+
+        assertEquals(750_000, ledger.balance(accountId));
+        assertEquals(0, entrySum("opening-" + accountId));
+        // Already opened accounts are left alone
+        assertEquals(0, ledger.openExistingAccounts());
+    }
+
+    @Test
+    void testBalance_SnapshotPlusLaterPostings() throws Exception {
+        long accountId = openAccount(1_000_000);
+        post("charge-" + accountId, accountId, 500_000);
+        Thread.sleep(2_100);
+
+        ledger.snapshot();
+        post("deduction-" + accountId, accountId, -200_000);
+
+        assertEquals(1_500_000, jdbcTemplate.queryForObject(
+                "SELECT balance FROM balance_snapshot WHERE account_id = ?", Long.class, accountId));
+        assertEquals(1_300_000, ledger.balance(accountId));
+    }
+
+    @Test
+    void testPost_LateCommitIsRefused() {
+        long accountId = openAccount(1_000_000);
+
+        assertThrows(OverloadedException.class, () -> transactionTemplate().executeWithoutResult(
+                status -> {
+                    ledger.post("late-" + accountId, accountId, 500_000);
+                    sleep(1_100);
+                }));
+
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM ledger_posting WHERE entry_reference = ?", Long.class,
+                "late-" + accountId));
+        assertEquals(1_000_000, ledger.balance(accountId));
+    }
+
+    @Test
+    void testDropSnapshotsAfter_PostingsBehindFutureCutoffCountAgain() {
+        long accountId = openAccount(1_000_000);
+        // As if cut in a local time zone ahead of UTC, before postings were stamped in UTC
+        LocalDateTime ahead = Ledger.now().plusHours(3);
+        jdbcTemplate.update("INSERT INTO balance_snapshot (account_id, balance, covered_until, "
+                + "taken_at) VALUES (?, 1000000, ?, ?)", accountId, ahead, ahead);
+        post("charge-" + accountId, accountId, 500_000);
+        assertEquals(1_000_000, ledger.balance(accountId));
+
+        assertTrue(ledger.dropSnapshotsAfter(Ledger.now()) >= 1);
+
+        assertEquals(1_500_000, ledger.balance(accountId));
+    }
+
+    @Test
+    void testChargeAccount_PostsUnderTrackingNumber() {
+        Customer customer = TestCustomers.newCustomer(customers.incrementAndGet());
+        long accountId = openAccount(customer, 1_000_000);
+
+        TransactionDTO charge = mainService.chargeAccount(customer.getEmail(), 200_000L);
+
+        assertEquals(List.of(Map.of("ACCOUNT_ID", Ledger.CLEARING_ACCOUNT_ID, "AMOUNT", -200_000L),
+                Map.of("ACCOUNT_ID", accountId, "AMOUNT", 200_000L)),
+                postings(charge.getTrackingNumber()));
+    }
+
+    @Test
+    void testTransfer_PostsOneEntryBetweenAccounts() {
+        Customer sender = TestCustomers.newCustomer(customers.incrementAndGet());
+        long senderAccountId = openAccount(sender, 1_000_000);
+        Customer recipient = TestCustomers.newCustomer(customers.incrementAndGet());
+        long recipientAccountId = openAccount(recipient, 1_000_000);
+        String recipientAccountNumber =
+                accountRepository.findById(recipientAccountId).orElseThrow().getAccountNumber();
+
+        TransactionDTO transfer =
+                mainService.transfer(sender.getEmail(), recipientAccountNumber, 300_000L);
+
+        assertEquals(List.of(Map.of("ACCOUNT_ID", senderAccountId, "AMOUNT", -300_000L),
+                Map.of("ACCOUNT_ID", recipientAccountId, "AMOUNT", 300_000L)),
+                postings(transfer.getTransferReference()));
+        assertEquals(700_000, ledger.balance(senderAccountId));
+        assertEquals(1_300_000, ledger.balance(recipientAccountId));
+    }
+
+    private long openAccount(long amount) {
+        return openAccount(TestCustomers.newCustomer(customers.incrementAndGet()), amount);
+    }
+
+    private long openAccount(Customer customer, long amount) {
+        mainService.createUser(customer);
+        mainService.createAccount(customer.getEmail(), amount);
+        Long userId = customerRepository.findByEmail(customer.getEmail()).orElseThrow().getId();
+        return accountRepository.findByUserId(userId).orElseThrow().getId();
+    }
+
+    private void post(String entryReference, long accountId, long amount) {
+        transactionTemplate().executeWithoutResult(
+                status -> ledger.post(entryReference, accountId, amount));
+    }
+
+    private List<Map<String, Object>> postings(String entryReference) {
+        return jdbcTemplate.queryForList("SELECT account_id, amount FROM ledger_posting "
+                + "WHERE entry_reference = ? ORDER BY amount", entryReference);
+    }
+
+    private long entrySum(String entryReference) {
+        return jdbcTemplate.queryForObject(
+                "SELECT SUM(amount) FROM ledger_posting WHERE entry_reference = ?", Long.class,
+                entryReference);
+    }
+
+    private TransactionTemplate transactionTemplate() {
+        return new TransactionTemplate(transactionManager);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
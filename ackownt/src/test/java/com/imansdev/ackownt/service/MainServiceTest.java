@@ -1,13 +1,22 @@
 package com.imansdev.ackownt.service;
 
 import com.imansdev.ackownt.auth.JwtUtil;
+import com.imansdev.ackownt.auth.PrincipalCache;
+import com.imansdev.ackownt.auth.TokenDenylist;
+import com.imansdev.ackownt.dto.AccountDTO;
+import com.imansdev.ackownt.dto.TransactionDTO;
+import com.imansdev.ackownt.dto.TransactionFilterDTO;
 import com.imansdev.ackownt.dto.UpdateUserDTO;
 import com.imansdev.ackownt.enums.Gender;
 import com.imansdev.ackownt.enums.MilitaryStatus;
+import com.imansdev.ackownt.model.Account;
 import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.repository.AccountBalanceView;
 import com.imansdev.ackownt.repository.AccountRepository;
+import com.imansdev.ackownt.repository.DailyDeductionRepository;
 import com.imansdev.ackownt.repository.TransactionRepository;
 import com.imansdev.ackownt.repository.CustomerRepository;
+import com.imansdev.ackownt.repository.CustomerUniqueKeys;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ValidationException;
 import jakarta.validation.Validator;
@@ -16,14 +25,21 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class MainServiceTest {
@@ -40,18 +56,44 @@ class MainServiceTest {
     @Mock
     private AccountRepository accountRepository;
 
+    @Mock
+    private AccountIdCache accountIdCache;
+
     @Mock
     private TransactionRepository transactionRepository;
 
+    @Mock
+    private DailyDeductionRepository dailyDeductionRepository;
+
     @Mock
     private BCryptPasswordEncoder passwordEncoder;
 
     @Mock
     private JwtUtil jwtUtil;
 
+    @Mock
+    private PrincipalCache principalCache;
+
+    @Mock
+    private TokenDenylist tokenDenylist;
+
+    @Mock
+    private UniqueKeyFilter uniqueKeyFilter;
+
+    @Mock
+    private BalanceStrategy balanceStrategy;
+
+    @Mock
+    private IdGenerator idGenerator;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(transactionTemplate.execute(any())).thenAnswer(
+                invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
     }
 
     @Test
@@ -94,6 +136,26 @@ class MainServiceTest {
         assertEquals("mockToken", token);
     }
 
+    @Test
+    void testLoginUser_RehashesPasswordWithOtherStrength() {
+        Customer user = new Customer();
+        user.setEmail("imanabc@example.com");
+        user.setPassword("encodedPassword");
+
+        when(customerRepository.findByEmail("imanabc@example.com")).thenReturn(Optional.of(user));
+        when(passwordEncoder.matches("password123", "encodedPassword")).thenReturn(true);
+        when(passwordEncoder.upgradeEncoding("encodedPassword")).thenReturn(true);
+        when(passwordEncoder.encode("password123")).thenReturn("rehashedPassword");
+        Customer stored = new Customer();
+        stored.setPassword("encodedPassword");
+        when(customerRepository.lockById(null)).thenReturn(Optional.of(stored));
+
+        mainService.authenticateUser("imanabc@example.com", "password123");
+
+        assertEquals("rehashedPassword", stored.getPassword());
+        assertEquals("rehashedPassword", user.getPassword());
+    }
+
 
     // --- Invalid Create User Tests ---
 
@@ -159,8 +221,12 @@ class MainServiceTest {
         invalidUser.setPhoneNumber("09129966331");
         invalidUser.setPassword("password123");
 
-        when(customerRepository.findByEmail("alreadyused@example.com"))
-                .thenReturn(Optional.of(invalidUser));
+        CustomerUniqueKeys taken = mock(CustomerUniqueKeys.class);
+        when(taken.getEmail()).thenReturn("alreadyused@example.com");
+        when(uniqueKeyFilter.mightExist("alreadyused@example.com", "09129966331", "4528422034"))
+                .thenReturn(true);
+        when(customerRepository.findByEmailOrPhoneNumberOrNationalId("alreadyused@example.com",
+                "09129966331", "4528422034")).thenReturn(List.of(taken));
 
         ValidationException exception = assertThrows(ValidationException.class, () -> {
             mainService.createUser(invalidUser);
@@ -169,6 +235,50 @@ class MainServiceTest {
         assertTrue(exception.getMessage().contains("Email must be unique"));
     }
 
+    @Test
+    void testCreateUser_NewValuesSkipUniquenessQuery() {
+        Customer newUser = new Customer();
+        newUser.setNationalId("4528422034");
+        newUser.setEmail("imanabc@example.com");
+        newUser.setPhoneNumber("09129966331");
+        newUser.setPassword("password123");
+
+        when(passwordEncoder.encode("password123")).thenReturn("encodedPassword");
+        when(validator.validate(any(Customer.class))).thenReturn(Set.of());
+
+        mainService.createUser(newUser);
+
+        verify(customerRepository, never()).findByEmailOrPhoneNumberOrNationalId(any(), any(),
+                any());
+        verify(uniqueKeyFilter).add("imanabc@example.com", "09129966331", "4528422034");
+    }
+
+    @Test
+    void testCreateUser_ConstraintViolationReportsTakenValue() {
+        Customer newUser = new Customer();
+        newUser.setNationalId("4528422034");
+        newUser.setEmail("imanabc@example.com");
+        newUser.setPhoneNumber("09129966331");
+        newUser.setPassword("password123");
+        CustomerUniqueKeys taken = mock(CustomerUniqueKeys.class);
+        when(taken.getEmail()).thenReturn("other@example.com");
+        when(taken.getPhoneNumber()).thenReturn("09129966331");
+
+        when(passwordEncoder.encode("password123")).thenReturn("encodedPassword");
+        when(validator.validate(any(Customer.class))).thenReturn(Set.of());
+        when(customerRepository.save(newUser))
+                .thenThrow(new DataIntegrityViolationException("customer_phone_number"));
+        when(customerRepository.findByEmailOrPhoneNumberOrNationalId("imanabc@example.com",
+                "09129966331", "4528422034")).thenReturn(List.of(taken));
+
+        ValidationException exception = assertThrows(ValidationException.class, () -> {
+            mainService.createUser(newUser);
+        });
+
+        assertEquals("Phone number must be unique", exception.getMessage());
+        verify(uniqueKeyFilter, never()).add(any(), any(), any());
+    }
+
     @Test
     void testCreateUser_BusinessRuleViolation_MaleWithMilitaryStatusNone() {
         // Create a customer object with invalid military status for a male user
@@ -362,6 +472,156 @@ class MainServiceTest {
         assertTrue(exception.getMessage().contains("Amount must be a positive number"));
     }
 
+    @Test
+    void testDeductAmount_InsufficientBalance() {
+        Customer user = new Customer();
+        user.setEmail("imanabc@example.com");
+
+        when(customerRepository.findByEmail("imanabc@example.com")).thenReturn(Optional.of(user));
+        when(balanceStrategy.debit(any(), eq(200000L), anyLong(), any()))
+                .thenThrow(BalanceStrategy.insufficientBalance());
+        ReflectionTestUtils.setField(mainService, "minWithdrawal", 100000L);
+        ReflectionTestUtils.setField(mainService, "maxWithdrawal", 10000000L);
+
+        ValidationException exception = assertThrows(ValidationException.class, () -> {
+            mainService.deductAmount("imanabc@example.com", 200000L);
+        });
+
+        assertTrue(exception.getMessage().contains("Insufficient balance"));
+        verify(transactionRepository, never()).save(any());
+    }
+
+    @Test
+    void testDeductAmount_DailyLimitExceeded() {
+        Customer user = new Customer();
+        user.setEmail("imanabc@example.com");
+
+        when(customerRepository.findByEmail("imanabc@example.com")).thenReturn(Optional.of(user));
+        when(balanceStrategy.debit(any(), eq(200000L), anyLong(), any())).thenReturn(500000L);
+        when(dailyDeductionRepository.reserve(any(), any(), eq(200000L), anyLong())).thenReturn(0);
+        when(dailyDeductionRepository.existsByUserIdAndDeductionDate(any(), any()))
+                .thenReturn(true);
+        ReflectionTestUtils.setField(mainService, "minWithdrawal", 100000L);
+        ReflectionTestUtils.setField(mainService, "maxWithdrawal", 10000000L);
+
+        ValidationException exception = assertThrows(ValidationException.class, () -> {
+            mainService.deductAmount("imanabc@example.com", 200000L);
+        });
+
+        assertTrue(exception.getMessage().contains("Total daily deductions must be less than"));
+        verify(transactionRepository, never()).save(any());
+    }
+
+    @Test
+    void testChargeAccount_RecordsBalanceFromStrategy() {
+        Customer user = new Customer();
+        user.setEmail("imanabc@example.com");
+
+        when(customerRepository.findByEmail("imanabc@example.com")).thenReturn(Optional.of(user));
+        when(idGenerator.nextTrackingNumber()).thenReturn("000000000042");
+        when(balanceStrategy.credit(any(), eq(5000L), any())).thenReturn(25000L);
+        ReflectionTestUtils.setField(mainService, "minBalance", 10000L);
+
+        TransactionDTO transaction = mainService.chargeAccount("imanabc@example.com", 5000L);
+
+        assertEquals(15000L, transaction.getWithdrawalBalance());
+        // The strategy is given the tracking number the transaction is recorded under
+        assertEquals("000000000042", transaction.getTrackingNumber());
+        verify(balanceStrategy).credit(any(), eq(5000L), eq("000000000042"));
+        verify(accountRepository, never()).save(any());
+    }
+
+    @Test
+    void testChargeAccount_StripedAccountBypassesStrategy() {
+        Customer user = new Customer();
+        user.setEmail("imanabc@example.com");
+        AccountStripes accountStripes = mock(AccountStripes.class);
+        ReflectionTestUtils.setField(mainService, "accountStripes", accountStripes);
+        ReflectionTestUtils.setField(mainService, "minBalance", 10000L);
+
+        when(customerRepository.findByEmail("imanabc@example.com")).thenReturn(Optional.of(user));
+        when(accountStripes.isStriped(any())).thenReturn(true);
+        when(accountStripes.credit(any(), eq(5000L))).thenReturn(30000L);
+
+        TransactionDTO transaction = mainService.chargeAccount("imanabc@example.com", 5000L);
+
+        assertEquals(20000L, transaction.getWithdrawalBalance());
+        verify(balanceStrategy, never()).credit(any(), anyLong(), any());
+    }
+
+    @Test
+    void testGetUserAccountInfo_ReportsBalanceFromStrategy() {
+        Customer user = new Customer();
+        user.setEmail("imanabc@example.com");
+        Account account = new Account();
+        account.setBalance(100000L);
+
+        when(customerRepository.findByEmail("imanabc@example.com")).thenReturn(Optional.of(user));
+        when(accountIdCache.get(any(), any())).thenReturn(Optional.of(7L));
+        when(accountRepository.findById(7L)).thenReturn(Optional.of(account));
+        when(balanceStrategy.balance(account)).thenReturn(250000L);
+
+        Map<String, Object> info = mainService.getUserAccountInfoAndTransactions("imanabc@example.com");
+
+        assertEquals(250000L, ((AccountDTO) info.get("account")).getBalance());
+    }
+
+    // --- Transfer Tests ---
+
+    @Test
+    void testTransfer_SameAccount() {
+        Customer user = new Customer();
+        user.setEmail("imanabc@example.com");
+        AccountBalanceView source = mock(AccountBalanceView.class);
+        Account target = mock(Account.class);
+        when(source.getId()).thenReturn(7L);
+        when(target.getId()).thenReturn(7L);
+
+        when(customerRepository.findByEmail("imanabc@example.com")).thenReturn(Optional.of(user));
+        when(accountRepository.findBalanceByUserId(any())).thenReturn(Optional.of(source));
+        when(accountRepository.findByAccountNumber("0123456789")).thenReturn(Optional.of(target));
+        ReflectionTestUtils.setField(mainService, "minWithdrawal", 100000L);
+        ReflectionTestUtils.setField(mainService, "maxWithdrawal", 10000000L);
+
+        ValidationException exception = assertThrows(ValidationException.class, () -> {
+            mainService.transfer("imanabc@example.com", "0123456789", 200000L);
+        });
+
+        assertTrue(exception.getMessage().contains("Cannot transfer to the same account"));
+        verifyNoInteractions(balanceStrategy);
+    }
+
+    // --- Transaction Page Tests ---
+
+    @Test
+    void testGetUserTransactionsPage_PageSizeAboveMaximum() {
+        ReflectionTestUtils.setField(mainService, "maxPageSize", 100);
+        TransactionFilterDTO filter = new TransactionFilterDTO(null, null, null, null, null);
+
+        ValidationException exception = assertThrows(ValidationException.class, () -> {
+            mainService.getUserTransactionsPage("imanabc@example.com", filter, null, 101);
+        });
+
+        assertTrue(exception.getMessage().contains("Page size must be between 1 and 100"));
+    }
+
+    @Test
+    void testGetUserTransactionsPage_InvalidCursor() {
+        Customer user = new Customer();
+        user.setEmail("imanabc@example.com");
+
+        when(customerRepository.findByEmail("imanabc@example.com")).thenReturn(Optional.of(user));
+        ReflectionTestUtils.setField(mainService, "defaultPageSize", 20);
+        TransactionFilterDTO filter = new TransactionFilterDTO(null, null, null, null, null);
+
+        ValidationException exception = assertThrows(ValidationException.class, () -> {
+            mainService.getUserTransactionsPage("imanabc@example.com", filter, "not-a-cursor",
+                    null);
+        });
+
+        assertTrue(exception.getMessage().contains("Invalid cursor"));
+    }
+
     // --- Update User Info Tests ---
 
     @Test
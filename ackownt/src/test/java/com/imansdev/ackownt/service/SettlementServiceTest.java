@@ -0,0 +1,277 @@
+package com.imansdev.ackownt.service;
+
+import com.imansdev.ackownt.TestCustomers;
+import com.imansdev.ackownt.dto.SettlementLineDTO;
+import com.imansdev.ackownt.dto.SettlementLineResultDTO;
+import com.imansdev.ackownt.dto.SettlementReportDTO;
+import com.imansdev.ackownt.enums.TransactionType;
+import com.imansdev.ackownt.model.Account;
+import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.repository.AccountRepository;
+import com.imansdev.ackownt.repository.CustomerRepository;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionTemplate;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Striping is enabled, but only the accounts a test stripes itself are striped
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"account.striping.enabled=true", "account.striping.stripes=4"})
+@ActiveProfiles("test")
+class SettlementServiceTest {
+
+    // Customers of this class, apart from those of other tests sharing the database
+    private static final AtomicInteger customers = new AtomicInteger(500);
+
+    @Autowired
+    private SettlementService settlementService;
+    @Autowired
+    private MainService mainService;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private AccountStripes accountStripes;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void testSettle_InvalidLineFailsAlone() {
+        String account = openAccount(1_000_000);
+
+        SettlementReportDTO report = settlementService.settle(List.of(
+                new SettlementLineDTO(account, TransactionType.CHARGE, 500_000L),
+                new SettlementLineDTO("000000000000", TransactionType.CHARGE, 500_000L),
+                new SettlementLineDTO(account, TransactionType.DEDUCTION, 5_000_000L),
+                new SettlementLineDTO(account, TransactionType.DEDUCTION, 200_000L)));
+
+        assertEquals(2, report.getSucceeded());
+        assertEquals(2, report.getFailed());
+        assertEquals("SUCCESSFUL", report.getResults().get(0).getStatus());
+        assertEquals("Account not found: 000000000000", report.getResults().get(1).getError());
+        assertEquals("Insufficient balance for this deduction",
+                report.getResults().get(2).getError());
+        assertEquals("SUCCESSFUL", report.getResults().get(3).getStatus());
+        assertEquals(1_300_000, balance(account));
+        // The opening deposit and the two settled lines
+        assertEquals(3, transactionCount(account));
+    }
+
+    @Test
+    void testSettle_DailyLimitSharedAcrossLines() {
+        String account = openAccount(20_000_000);
+
+        SettlementReportDTO report = settlementService.settle(List.of(
+                new SettlementLineDTO(account, TransactionType.DEDUCTION, 6_000_000L),
+                new SettlementLineDTO(account, TransactionType.DEDUCTION, 6_000_000L),
+                new SettlementLineDTO(account, TransactionType.DEDUCTION, 4_000_000L)));
+
+        assertEquals("SUCCESSFUL", report.getResults().get(0).getStatus());
+        assertEquals("Total daily deductions must be less than 10000000",
+                report.getResults().get(1).getError());
+        assertEquals("SUCCESSFUL", report.getResults().get(2).getStatus());
+        assertEquals(10_000_000, balance(account));
+        // The day's total is stored for later deductions outside the settlement
+        SettlementReportDTO later = settlementService.settle(
+                List.of(new SettlementLineDTO(account, TransactionType.DEDUCTION, 200_000L)));
+        assertEquals("Total daily deductions must be less than 10000000",
+                later.getResults().get(0).getError());
+    }
+
+    @Test
+    void testSettle_DatabaseErrorFailsWholeChunk() {
+        String account = openAccount(1_000_000);
+        // Lines pass every rule, but the database refuses this amount
+        jdbcTemplate.execute(
+                "ALTER TABLE transaction ADD CONSTRAINT settlement_test_amount CHECK (amount <> 123457)");
+        SettlementReportDTO report;
+        try {
+            List<SettlementLineDTO> lines = new ArrayList<>();
+            // The default chunk size is 500, so the bad line spoils only the first chunk
+            for (int i = 0; i < 501; i++) {
+                lines.add(new SettlementLineDTO(account, TransactionType.CHARGE,
+                        i == 10 ? 123_457L : 1_000L));
+            }
+            report = settlementService.settle(lines);
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE transaction DROP CONSTRAINT settlement_test_amount");
+        }
+
+        assertEquals(1, report.getSucceeded());
+        assertEquals(500, report.getFailed());
+        assertTrue(report.getResults().subList(0, 500).stream()
+                .allMatch(result -> result.getError().startsWith("Settlement failed: ")));
+        assertEquals("SUCCESSFUL", report.getResults().get(500).getStatus());
+        // Nothing of the failed chunk was written
+        assertEquals(1_001_000, balance(account));
+        assertEquals(2, transactionCount(account));
+    }
+
+    @Test
+    void testSettle_ChunkThatCannotCommitFailsAlone() {
+        String account = openAccount(1_000_000);
+        int chunkSize = (int) ReflectionTestUtils.getField(settlementService, "chunkSize");
+        ReflectionTestUtils.setField(settlementService, "chunkSize", 1);
+        // The second chunk's commit fails after its statements have run
+        AtomicInteger commits = new AtomicInteger();
+        ReflectionTestUtils.setField(settlementService, "transactionTemplate",
+                new TransactionTemplate(new DelegatingTransactionManager(transactionManager) {
+                    @Override
+                    public void commit(TransactionStatus status) {
+                        if (commits.incrementAndGet() == 2) {
+                            super.rollback(status);
+                            throw new TransactionSystemException("Commit failed");
+                        }
+                        super.commit(status);
+                    }
+                }));
+        SettlementReportDTO report;
+        try {
+            report = settlementService.settle(List.of(
+                    new SettlementLineDTO(account, TransactionType.CHARGE, 1_000L),
+                    new SettlementLineDTO(account, TransactionType.CHARGE, 2_000L),
+                    new SettlementLineDTO(account, TransactionType.CHARGE, 4_000L)));
+        } finally {
+            ReflectionTestUtils.setField(settlementService, "chunkSize", chunkSize);
+            ReflectionTestUtils.setField(settlementService, "transactionTemplate",
+                    new TransactionTemplate(transactionManager));
+        }
+
+        assertEquals(2, report.getSucceeded());
+        assertEquals("SUCCESSFUL", report.getResults().get(0).getStatus());
+        assertEquals("Settlement failed: Commit failed", report.getResults().get(1).getError());
+        assertEquals("SUCCESSFUL", report.getResults().get(2).getStatus());
+        assertEquals(1_005_000, balance(account));
+        assertEquals(3, transactionCount(account));
+    }
+
+    @Test
+    void testSettle_OppositeOrdersDoNotDeadlock() throws Exception {
+        String first = openAccount(1_000_000);
+        String second = openAccount(1_000_000);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<CompletableFuture<SettlementReportDTO>> settlements = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                List<SettlementLineDTO> lines = i % 2 == 0
+                        ? List.of(new SettlementLineDTO(first, TransactionType.CHARGE, 1_000L),
+                                new SettlementLineDTO(second, TransactionType.CHARGE, 1_000L))
+                        : List.of(new SettlementLineDTO(second, TransactionType.CHARGE, 1_000L),
+                                new SettlementLineDTO(first, TransactionType.CHARGE, 1_000L));
+                settlements.add(CompletableFuture.supplyAsync(() -> settlementService.settle(lines),
+                        executor));
+            }
+            for (CompletableFuture<SettlementReportDTO> settlement : settlements) {
+                SettlementReportDTO report = settlement.get(60, TimeUnit.SECONDS);
+                assertEquals(2, report.getSucceeded(), () -> report.getResults().stream()
+                        .map(SettlementLineResultDTO::getError).toList().toString());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1_020_000, balance(first));
+        assertEquals(1_020_000, balance(second));
+    }
+
+    @Test
+    void testSettle_DeductionMergesStripesColumnCannotCover() {
+        String account = openAccount(1_000_000);
+        long accountId = accountRepository.findByAccountNumber(account).orElseThrow().getId();
+        restripe(Set.of(account));
+        SettlementReportDTO report;
+        try {
+            jdbcTemplate.update("UPDATE account SET balance = 100000 WHERE id = ?", accountId);
+            jdbcTemplate.update("UPDATE account_stripe SET amount = 300000 WHERE account_id = ? "
+                    + "AND stripe = 0", accountId);
+            jdbcTemplate.update("UPDATE account_stripe SET amount = 600000 WHERE account_id = ? "
+                    + "AND stripe = 1", accountId);
+
+            report = settlementService.settle(List.of(
+                    new SettlementLineDTO(account, TransactionType.DEDUCTION, 350_000L),
+                    new SettlementLineDTO(account, TransactionType.DEDUCTION, 200_000L)));
+
+            assertEquals(List.of(0L, 0L, 0L, 0L), jdbcTemplate.queryForList("SELECT amount "
+                    + "FROM account_stripe WHERE account_id = ? ORDER BY stripe", Long.class,
+                    accountId));
+        } finally {
+            restripe(Set.of());
+        }
+
+        assertEquals(2, report.getSucceeded(), () -> report.getResults().stream()
+                .map(SettlementLineResultDTO::getError).toList().toString());
+        assertEquals(640_000, report.getResults().get(0).getWithdrawalBalance());
+        assertEquals(440_000, report.getResults().get(1).getWithdrawalBalance());
+        assertEquals(450_000, balance(account));
+    }
+
+    private void restripe(Set<String> accountNumbers) {
+        AccountStripes target = AopTestUtils.getTargetObject(accountStripes);
+        ReflectionTestUtils.setField(target, "accountNumbers", accountNumbers);
+        target.start();
+    }
+
+    private static class DelegatingTransactionManager implements PlatformTransactionManager {
+
+        private final PlatformTransactionManager delegate;
+
+        DelegatingTransactionManager(PlatformTransactionManager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return delegate.getTransaction(definition);
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            delegate.commit(status);
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            delegate.rollback(status);
+        }
+    }
+
+    private String openAccount(long amount) {
+        Customer customer = TestCustomers.newCustomer(customers.incrementAndGet());
+        mainService.createUser(customer);
+        mainService.createAccount(customer.getEmail(), amount);
+        Long userId = customerRepository.findByEmail(customer.getEmail()).orElseThrow().getId();
+        return accountRepository.findByUserId(userId).map(Account::getAccountNumber)
+                .orElseThrow();
+    }
+
+    private long balance(String accountNumber) {
+        return jdbcTemplate.queryForObject(
+                "SELECT balance FROM account WHERE account_number = ?", Long.class, accountNumber);
+    }
+
+    private long transactionCount(String accountNumber) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transaction t "
+                + "JOIN account a ON a.user_id = t.user_id WHERE a.account_number = ?",
+                Long.class, accountNumber);
+    }
+}
@@ -0,0 +1,45 @@
+package com.imansdev.ackownt.service;
+
+import com.imansdev.ackownt.TestCustomers;
+import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.repository.AccountRepository;
+import com.imansdev.ackownt.repository.CustomerRepository;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"transaction.journal.enabled=true",
+        "transaction.journal.path=target/journal-test/${random.uuid}/transaction.journal"})
+@ActiveProfiles("test")
+class TransactionJournalDatabaseTest {
+
+    @Autowired
+    private TransactionJournal transactionJournal;
+    @Autowired
+    private MainService mainService;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Test
+    void testChargeAccount_FailedJournalWriteRollsBalanceBack() throws Exception {
+        Customer customer = TestCustomers.newCustomer(800);
+        mainService.createUser(customer);
+        mainService.createAccount(customer.getEmail(), 1_000_000L);
+        Long userId = customerRepository.findByEmail(customer.getEmail()).orElseThrow().getId();
+        ((FileChannel) ReflectionTestUtils.getField(transactionJournal, "channel")).close();
+
+        assertThrows(UncheckedIOException.class,
+                () -> mainService.chargeAccount(customer.getEmail(), 200_000L));
+
+        assertTrue(transactionJournal.isFailed());
+        assertEquals(1_000_000L,
+                accountRepository.findByUserId(userId).orElseThrow().getBalance());
+    }
+}
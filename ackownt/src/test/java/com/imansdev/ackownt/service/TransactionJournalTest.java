@@ -0,0 +1,256 @@
+package com.imansdev.ackownt.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.imansdev.ackownt.enums.TransactionDescription;
+import com.imansdev.ackownt.enums.TransactionStatus;
+import com.imansdev.ackownt.enums.TransactionType;
+import com.imansdev.ackownt.model.Customer;
+import com.imansdev.ackownt.model.Transaction;
+import com.imansdev.ackownt.repository.CustomerRepository;
+import com.imansdev.ackownt.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TransactionJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private Path journalPath;
+    private Path checkpointPath;
+    private TransactionRepository transactionRepository;
+    private CustomerRepository customerRepository;
+    private EntityManager entityManager;
+    private TransactionJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        journalPath = directory.resolve("transaction.journal");
+        checkpointPath = directory.resolve("transaction.journal.checkpoint");
+        transactionRepository = mock(TransactionRepository.class);
+        customerRepository = mock(CustomerRepository.class);
+        entityManager = mock(EntityManager.class);
+        when(customerRepository.findExistingIds(anyCollection())).thenReturn(List.of(1L));
+        when(entityManager.getReference(eq(Customer.class), any())).thenReturn(customer());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testOpen_ReplaysJournaledRecords() throws Exception {
+        Files.writeString(journalPath, line("000000000001") + line("000000000002"));
+
+        journal = newJournal(Long.MAX_VALUE);
+        journal.open();
+        journal.close();
+
+        assertEquals(List.of("000000000001", "000000000002"), persistedTrackingNumbers());
+        assertEquals(Files.size(journalPath), checkpoint());
+    }
+
+    @Test
+    void testOpen_TruncatesTornTail() throws Exception {
+        String complete = line("000000000001");
+        Files.writeString(journalPath, complete + "{\"journaledAt\":1,\"userId\":1,\"track");
+
+        journal = newJournal(Long.MAX_VALUE);
+        journal.open();
+        journal.close();
+
+        assertEquals(complete.length(), Files.size(journalPath));
+        assertEquals(List.of("000000000001"), persistedTrackingNumbers());
+    }
+
+    @Test
+    void testOpen_ResumesFromCheckpoint() throws Exception {
+        String first = line("000000000001");
+        Files.writeString(journalPath, first + line("000000000002"));
+        Files.writeString(checkpointPath, Long.toString(first.length()));
+
+        journal = newJournal(Long.MAX_VALUE);
+        journal.open();
+        journal.close();
+
+        assertEquals(List.of("000000000002"), persistedTrackingNumbers());
+        assertEquals(Files.size(journalPath), checkpoint());
+    }
+
+    @Test
+    void testDrain_SkipsStoredTrackingNumbers() throws Exception {
+        Files.writeString(journalPath, line("000000000001") + line("000000000002"));
+        // Inserted before a crash that happened ahead of the checkpoint
+        when(transactionRepository.findExistingTrackingNumbers(anyCollection()))
+                .thenReturn(List.of("000000000001"));
+
+        journal = newJournal(Long.MAX_VALUE);
+        journal.open();
+        journal.close();
+
+        assertEquals(List.of("000000000002"), persistedTrackingNumbers());
+    }
+
+    @Test
+    void testDrain_RotatesOnceInserted() throws Exception {
+        journal = newJournal(1);
+        journal.open();
+        journal.append(transaction("000000000001"));
+        journal.close();
+
+        assertEquals(List.of("000000000001"), persistedTrackingNumbers());
+        assertEquals(0, Files.size(journalPath));
+        assertEquals(0, checkpoint());
+    }
+
+    @Test
+    void testOpen_SkipsAbortedRecords() throws Exception {
+        Files.writeString(journalPath, line("000000000001") + line("000000000002")
+                + "{\"aborted\":\"000000000001\"}\n");
+
+        journal = newJournal(Long.MAX_VALUE);
+        journal.open();
+        journal.close();
+
+        assertEquals(List.of("000000000002"), persistedTrackingNumbers());
+        assertEquals(Files.size(journalPath), checkpoint());
+    }
+
+    @Test
+    void testDrain_WaitsForTransactionToComplete() throws Exception {
+        journal = newJournal(Long.MAX_VALUE);
+        journal.open();
+        // Drain by hand rather than on the writer thread
+        ScheduledExecutorService writer =
+                (ScheduledExecutorService) ReflectionTestUtils.getField(journal, "writer");
+        writer.shutdown();
+        writer.awaitTermination(30, TimeUnit.SECONDS);
+
+        TransactionSynchronizationManager.initSynchronization();
+        journal.append(transaction("000000000001"));
+        beforeCommit();
+        assertEquals(0, (int) ReflectionTestUtils.invokeMethod(journal, "flushBatch"));
+        afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertEquals(1, (int) ReflectionTestUtils.invokeMethod(journal, "flushBatch"));
+        journal.close();
+        assertEquals(List.of("000000000001"), persistedTrackingNumbers());
+    }
+
+    @Test
+    void testAppend_RolledBackRecordIsMarkedAborted() throws Exception {
+        journal = newJournal(Long.MAX_VALUE);
+        journal.open();
+
+        TransactionSynchronizationManager.initSynchronization();
+        journal.append(transaction("000000000001"));
+        beforeCommit();
+        afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        journal.close();
+
+        assertEquals(List.of(), persistedTrackingNumbers());
+        assertTrue(Files.readString(journalPath).endsWith("{\"aborted\":\"000000000001\"}\n"));
+    }
+
+    @Test
+    void testAppend_FailedWriteFailsBeforeCommit() throws Exception {
+        journal = newJournal(Long.MAX_VALUE);
+        journal.open();
+        ((FileChannel) ReflectionTestUtils.getField(journal, "channel")).close();
+
+        TransactionSynchronizationManager.initSynchronization();
+        journal.append(transaction("000000000001"));
+        assertThrows(UncheckedIOException.class, this::beforeCommit);
+        afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertTrue(journal.isFailed());
+        // A torn line may be left behind, so later records are refused as well
+        assertThrows(IllegalStateException.class,
+                () -> journal.append(transaction("000000000002")));
+        journal.close();
+    }
+
+    private void beforeCommit() {
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.beforeCommit(false));
+    }
+
+    private void afterCompletion(int status) {
+        List<TransactionSynchronization> synchronizations =
+                TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+
+    private TransactionJournal newJournal(long rotateBytes) {
+        TransactionJournal journal = new TransactionJournal(mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), journalPath.toString(), 500, 60_000, rotateBytes);
+        ReflectionTestUtils.setField(journal, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(journal, "transactionRepository", transactionRepository);
+        ReflectionTestUtils.setField(journal, "customerRepository", customerRepository);
+        ReflectionTestUtils.setField(journal, "entityManager", entityManager);
+        return journal;
+    }
+
+    private List<String> persistedTrackingNumbers() {
+        ArgumentCaptor<Transaction> persisted = ArgumentCaptor.forClass(Transaction.class);
+        verify(entityManager, atLeast(0)).persist(persisted.capture());
+        List<String> trackingNumbers = new ArrayList<>();
+        persisted.getAllValues().forEach(t -> trackingNumbers.add(t.getTrackingNumber()));
+        return trackingNumbers;
+    }
+
+    private long checkpoint() throws Exception {
+        return Long.parseLong(Files.readString(checkpointPath, StandardCharsets.UTF_8).trim());
+    }
+
+    private static String line(String trackingNumber) {
+        return "{\"journaledAt\":1,\"userId\":1,\"trackingNumber\":\"" + trackingNumber
+                + "\",\"transactionName\":\"CHARGE\",\"transactionStatus\":\"SUCCESSFUL\","
+                + "\"amount\":500000,\"transactionDate\":\"2024-10-20\","
+                + "\"description\":\"CHARGING_SUCCESSFUL\",\"withdrawalBalance\":490000,"
+                + "\"transferReference\":null}\n";
+    }
+
+    private static Transaction transaction(String trackingNumber) {
+        Transaction transaction = new Transaction();
+        transaction.setUser(customer());
+        transaction.setTrackingNumber(trackingNumber);
+        transaction.setTransactionName(TransactionType.CHARGE);
+        transaction.setTransactionStatus(TransactionStatus.SUCCESSFUL);
+        transaction.setAmount(500000L);
+        transaction.setDescription(TransactionDescription.CHARGING_SUCCESSFUL);
+        transaction.setWithdrawalBalance(490000L);
+        return transaction;
+    }
+
+    private static Customer customer() {
+        Customer customer = new Customer();
+        ReflectionTestUtils.setField(customer, "id", 1L);
+        return customer;
+    }
+}
@@ -0,0 +1,44 @@
+package com.imansdev.ackownt.service;
+
+import com.imansdev.ackownt.repository.CustomerRepository;
+import com.imansdev.ackownt.repository.CustomerUniqueKeys;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UniqueKeyFilterTest {
+
+    private UniqueKeyFilter uniqueKeyFilter;
+
+    @BeforeEach
+    void setUp() {
+        CustomerRepository customerRepository = mock(CustomerRepository.class);
+        CustomerUniqueKeys keys = mock(CustomerUniqueKeys.class);
+        when(keys.getEmail()).thenReturn("imanabc@example.com");
+        when(keys.getPhoneNumber()).thenReturn("09129966331");
+        when(keys.getNationalId()).thenReturn("4528422034");
+        when(customerRepository.streamUniqueKeys()).thenReturn(Stream.of(keys));
+        uniqueKeyFilter = new UniqueKeyFilter(customerRepository,
+                mock(PlatformTransactionManager.class), 1000);
+        uniqueKeyFilter.start();
+    }
+
+    @Test
+    void testMightExist_LoadedOnStartup() {
+        assertTrue(uniqueKeyFilter.mightExist("imanabc@example.com", "09120000000", "0000000000"));
+        assertTrue(uniqueKeyFilter.mightExist("new@example.com", "09129966331", "0000000000"));
+        assertTrue(uniqueKeyFilter.mightExist("new@example.com", "09120000000", "4528422034"));
+        assertFalse(uniqueKeyFilter.mightExist("new@example.com", "09120000000", "0000000000"));
+    }
+
+    @Test
+    void testMightExist_AfterAdd() {
+        assertFalse(uniqueKeyFilter.mightExistPhoneNumber("09121111111"));
+        uniqueKeyFilter.addPhoneNumber("09121111111");
+        assertTrue(uniqueKeyFilter.mightExistPhoneNumber("09121111111"));
+        assertFalse(uniqueKeyFilter.mightExist("other@example.com", "09122222222", null));
+    }
+}